@@ -48,6 +48,7 @@ public class TempFly extends JavaPlugin {
 	private CommandManager commands;
 	private GuiManager gui;
 	private BukkitTask autosave;
+	private ParticleTask particles;
 	
 	public HookManager getHookManager() {
 		return hooks;
@@ -73,6 +74,13 @@ public class TempFly extends JavaPlugin {
 		return gui;
 	}
 	
+	/**
+	 * @return The particle trail task or null if trails are disabled.
+	 */
+	public ParticleTask getParticleTask() {
+		return particles;
+	}
+	
 	@Override
 	public void onEnable() {
 		Console.setLogger(this.getLogger());
@@ -131,7 +139,8 @@ public class TempFly extends JavaPlugin {
 		Particles.initialize(this);
 		
 		if (V.particles) {
-			new ParticleTask(this).runTaskTimer(this, 0, 5);
+			particles = new ParticleTask(this);
+			particles.runTaskTimer(this, 0, 5);
 		}
 		if (V.actionBar) {
 			ActionBarAPI.initialize(this);
@@ -169,6 +178,7 @@ public class TempFly extends JavaPlugin {
 		V.loadValues();
 		initializeGui();
 		
+		time.onTempflyReload();
 		flight.onTempflyReload();
 		hooks.onTempflyReload();
 		
@@ -1,6 +1,7 @@
 package com.moneybags.tempfly.aesthetic;
 
 import com.moneybags.tempfly.aesthetic.actionbar.ActionBar;
+import com.moneybags.tempfly.aesthetic.actionbar.ActionBarDispatcher;
 import com.moneybags.tempfly.aesthetic.actionbar.LegacyActionBar;
 import com.moneybags.tempfly.aesthetic.actionbar.ModernActionBar;
 import org.bukkit.Bukkit;
@@ -11,6 +12,7 @@ import com.moneybags.tempfly.TempFly;
 public class ActionBarAPI {
 	
 	private static ActionBar actionBar;
+	private static ActionBarDispatcher dispatcher;
     
     public static void initialize(TempFly tempfly) {
         // Check if we're on 1.12 or above
@@ -19,6 +21,22 @@ public class ActionBarAPI {
         } else {
     	      actionBar = new LegacyActionBar(tempfly);
     	}
+    	  if (dispatcher != null) {
+    		  dispatcher.cancel();
+    	  }
+    	  dispatcher = new ActionBarDispatcher(actionBar);
+    	  dispatcher.runTaskTimer(tempfly, 1, 1);
+    }
+    
+    /**
+     * Queue an action bar to be sent with the next batch on the main thread.
+     * If the player is already looking at the same message it will not be resent.
+     * Safe to call asynchronously.
+     */
+    public static void queueActionBar(final Player player, final String message) {
+    	if (dispatcher != null) {
+    		dispatcher.queue(player, message);
+    	}
     }
     
     public static void sendActionBar(final Player player, final String message) {
@@ -0,0 +1,91 @@
+package com.moneybags.tempfly.aesthetic.actionbar;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import com.moneybags.tempfly.event.ActionBarSendEvent;
+
+/**
+ * Collects action bars queued from anywhere, including async time changes, and sends them
+ * in a single pass on the main thread each tick. Only the newest message queued for a player in a tick is sent,
+ * and a message identical to the one the player is already looking at is not resent until it would start to fade.
+ */
+public class ActionBarDispatcher extends BukkitRunnable {
+
+	// Roughly how many ticks the client keeps an action bar on screen before it fades.
+	private static final int DISPLAY_WINDOW = 40;
+
+	private final ActionBar actionBar;
+	private final Map<UUID, String> queued = new ConcurrentHashMap<>();
+	// Main thread only.
+	private final Map<UUID, SentMessage> sent = new HashMap<>();
+	private long tick;
+
+	public ActionBarDispatcher(ActionBar actionBar) {
+		this.actionBar = actionBar;
+	}
+
+	/**
+	 * Queue an action bar to be sent on the next tick. Replaces anything already queued for the player.
+	 * Safe to call from any thread.
+	 * @param player The player
+	 * @param message The message
+	 */
+	public void queue(Player player, String message) {
+		queued.put(player.getUniqueId(), message);
+	}
+
+	@Override
+	public void run() {
+		tick++;
+		for (UUID u : queued.keySet()) {
+			String message = queued.remove(u);
+			if (message == null) {
+				continue;
+			}
+			Player p = Bukkit.getPlayer(u);
+			if (p == null || !p.isOnline()) {
+				sent.remove(u);
+				continue;
+			}
+			SentMessage last = sent.get(u);
+			if (last != null && last.message.equals(message) && tick - last.tick < DISPLAY_WINDOW) {
+				continue;
+			}
+			ActionBarSendEvent event = new ActionBarSendEvent(p, message);
+			Bukkit.getPluginManager().callEvent(event);
+			if (event.isCancelled()) {
+				continue;
+			}
+			actionBar.sendActionBar(p, event.getMessage());
+			sent.put(u, new SentMessage(message, tick));
+		}
+
+		if (tick % DISPLAY_WINDOW == 0) {
+			Iterator<SentMessage> it = sent.values().iterator();
+			while (it.hasNext()) {
+				if (tick - it.next().tick >= DISPLAY_WINDOW) {
+					it.remove();
+				}
+			}
+		}
+	}
+
+	private static class SentMessage {
+
+		private final String message;
+		private final long tick;
+
+		private SentMessage(String message, long tick) {
+			this.message = message;
+			this.tick = tick;
+		}
+	}
+}
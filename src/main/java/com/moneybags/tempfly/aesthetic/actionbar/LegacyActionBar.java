@@ -1,6 +1,9 @@
 package com.moneybags.tempfly.aesthetic.actionbar;
 
 import com.moneybags.tempfly.TempFly;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.UUID;
@@ -8,6 +11,9 @@ import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 
 public class LegacyActionBar extends ActionBar {
+
+    // The server sends system messages from the nil uuid, there is no need to generate a new one every packet.
+    private static final UUID SYSTEM_UUID = new UUID(0, 0);
 	
     private String nmsver;
     private boolean
@@ -23,12 +29,19 @@ public class LegacyActionBar extends ActionBar {
     chatComponentTextClass,
     chatMessageTypeClass;
     
-    private Method
-    m3,
-    craftPlayerHandleMethod;
-    
     private  Object
     chatMessageType;
+
+    /*
+     * Everything needed to send a packet is resolved once when the server starts,
+     * the action bar is sent every second to every player flying.
+     */
+    private MethodHandle
+    componentFactory,
+    packetFactory,
+    craftPlayerHandle,
+    playerConnectionGetter,
+    sendPacket;
     
     public LegacyActionBar(TempFly tempfly) {
       super(tempfly);
@@ -45,13 +58,16 @@ public class LegacyActionBar extends ActionBar {
         
         
         try {
+        	MethodHandles.Lookup lookup = MethodHandles.lookup();
         	craftPlayerClass = Class.forName("org.bukkit.craftbukkit." + nmsver + ".entity.CraftPlayer");
         	packetPlayOutChatClass = Class.forName("net.minecraft.server." + nmsver + ".PacketPlayOutChat");
         	packetClass = Class.forName("net.minecraft.server." + nmsver + ".Packet");
         	iChatBaseComponentClass = Class.forName("net.minecraft.server." + nmsver + ".IChatBaseComponent");
         	  if (useOldMethods) {
                   chatSerializerClass = Class.forName("net.minecraft.server." + nmsver + ".ChatSerializer");
-                  m3 = chatSerializerClass.getDeclaredMethod("a", String.class);
+                  componentFactory = lookup.unreflect(chatSerializerClass.getDeclaredMethod("a", String.class));
+                  packetFactory = MethodHandles.insertArguments(lookup.findConstructor(packetPlayOutChatClass,
+                		  MethodType.methodType(void.class, iChatBaseComponentClass, byte.class)), 1, (byte) 2);
         	  } else {
         		  try {
             		  chatComponentTextClass = Class.forName("net.minecraft.server." + nmsver + ".ChatComponentText");
@@ -65,8 +81,25 @@ public class LegacyActionBar extends ActionBar {
         		  } catch (Exception e) {
         			  
         		  }
+        		  componentFactory = lookup.findConstructor(chatComponentTextClass, MethodType.methodType(void.class, String.class));
+        		  if (newConstructor) {
+        			  packetFactory = MethodHandles.insertArguments(lookup.findConstructor(packetPlayOutChatClass,
+        					  MethodType.methodType(void.class, iChatBaseComponentClass, chatMessageTypeClass, UUID.class)), 1, chatMessageType, SYSTEM_UUID);
+        		  } else {
+        			  try {
+        				  packetFactory = MethodHandles.insertArguments(lookup.findConstructor(packetPlayOutChatClass,
+        						  MethodType.methodType(void.class, iChatBaseComponentClass, chatMessageTypeClass)), 1, chatMessageType);
+        			  } catch (Exception e) {
+        				  packetFactory = MethodHandles.insertArguments(lookup.findConstructor(packetPlayOutChatClass,
+        						  MethodType.methodType(void.class, iChatBaseComponentClass, byte.class)), 1, (byte) 2);
+        			  }
+        		  }
         	  }
-        	  craftPlayerHandleMethod = craftPlayerClass.getDeclaredMethod("getHandle");
+        	  Method craftPlayerHandleMethod = craftPlayerClass.getDeclaredMethod("getHandle");
+        	  Field playerConnectionField = craftPlayerHandleMethod.getReturnType().getDeclaredField("playerConnection");
+        	  craftPlayerHandle = lookup.unreflect(craftPlayerHandleMethod);
+        	  playerConnectionGetter = lookup.unreflectGetter(playerConnectionField);
+        	  sendPacket = lookup.unreflect(playerConnectionField.getType().getDeclaredMethod("sendPacket", packetClass));
         } catch (Exception e) {
         	e.printStackTrace();
         }
@@ -75,33 +108,16 @@ public class LegacyActionBar extends ActionBar {
 
     @Override
     public void sendActionBar(final Player player, final String message) {
-        if (!player.isOnline()) {
+        if (!player.isOnline() || sendPacket == null) {
         	return;
         }
         
         try {
-            Object craftPlayer = craftPlayerClass.cast(player);
-            Object packet;
-            if (useOldMethods) {
-                Object cbc = iChatBaseComponentClass.cast(m3.invoke(chatSerializerClass, "{\"text\": \"" + message + "\"}"));
-                packet = packetPlayOutChatClass.getConstructor(new Class<?>[]{iChatBaseComponentClass, byte.class}).newInstance(cbc, (byte) 2);
-            } else {
-                Object chatCompontentText = chatComponentTextClass.getConstructor(new Class<?>[]{String.class}).newInstance(message);
-				if (newConstructor) {
-					packet = packetPlayOutChatClass.getConstructor(new Class<?>[]{iChatBaseComponentClass, chatMessageTypeClass, UUID.class}).newInstance(chatCompontentText, chatMessageType, UUID.randomUUID());
-				} else {
-					try {packet = packetPlayOutChatClass.getConstructor(new Class<?>[]{iChatBaseComponentClass, chatMessageTypeClass}).newInstance(chatCompontentText, chatMessageType);} catch (Exception e) {
-						packet = packetPlayOutChatClass.getConstructor(new Class<?>[]{iChatBaseComponentClass, byte.class}).newInstance(chatCompontentText, (byte) 2);
-					}
-				}
-                
-            }
-            Object craftPlayerHandle = craftPlayerHandleMethod.invoke(craftPlayer);
-            Field playerConnectionField = craftPlayerHandle.getClass().getDeclaredField("playerConnection");
-            Object playerConnection = playerConnectionField.get(craftPlayerHandle);
-            Method sendPacketMethod = playerConnection.getClass().getDeclaredMethod("sendPacket", packetClass);
-            sendPacketMethod.invoke(playerConnection, packet);
-        } catch (Exception e) {
+            Object component = componentFactory.invoke(useOldMethods ? "{\"text\": \"" + message + "\"}" : message);
+            Object packet = packetFactory.invoke(component);
+            Object playerConnection = playerConnectionGetter.invoke(craftPlayerHandle.invoke(player));
+            sendPacket.invoke(playerConnection, packet);
+        } catch (Throwable e) {
             e.printStackTrace();
         }
     }
@@ -1,7 +1,7 @@
 package com.moneybags.tempfly.aesthetic.particle;
 
-import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 import org.bukkit.Bukkit;
 import org.bukkit.Color;
@@ -25,11 +25,26 @@ public class Particles {
 	private static TempFly tempfly;
 	private static boolean oldParticles;
 	
+	// Shared between every trail so spawning particles doesn't create new data each time.
+	private static Object stoneData;
+	private static Object[] dustColors;
+	
 	public static void initialize(TempFly plugin) {
 		tempfly = plugin;
 		try {dustOptions = Class.forName("org.bukkit.Particle$DustOptions");} catch (Exception e) {}
 		try {blockData = Class.forName("org.bukkit.block.data.BlockData");} catch (Exception e) {}
 		oldParticles = oldParticles();
+		
+		if (blockData != null) {
+			stoneData = Material.STONE.createBlockData();
+		}
+		if (dustOptions != null) {
+			ThreadLocalRandom rand = ThreadLocalRandom.current();
+			dustColors = new Object[256];
+			for (int i = 0; i < dustColors.length; i++) {
+				dustColors[i] = new DustOptions(Color.fromRGB(rand.nextInt(255), rand.nextInt(255), rand.nextInt(255)), 2f);
+			}
+		}
 	}
 	
 	public static boolean oldParticles() {
@@ -38,6 +53,16 @@ public class Particles {
 	}
 	
 	public static void play(Location loc, String s) {
+		play(loc, compileTrail(s));
+	}
+	
+	/**
+	 * Resolve a trail name into the particle or effect for this server version.
+	 * If the name does not exist the default trail from the config is used, and if that does not exist either happy villager.
+	 * @param s The name of the particle
+	 * @return The compiled trail
+	 */
+	public static Trail compileTrail(String s) {
 		if (!oldParticles) {
 			Particle particle = null;
 			try {particle = Particle.valueOf(s.toUpperCase());} catch (Exception e1) {
@@ -47,20 +72,18 @@ public class Particles {
 			}
 			
 			Class<?> c = particle.getDataType();
-			try {
-				if (dustOptions != null && dustOptions.equals(c)) {
-					Random rand = new Random();
-					loc.getWorld().spawnParticle(particle, loc, 1, new DustOptions(Color.fromRGB(rand.nextInt(255), rand.nextInt(255), rand.nextInt(255)), 2f));	
-				} else if (blockData != null && blockData.equals(c)) {
-					loc.getWorld().spawnParticle(particle, loc, 1, Material.STONE.createBlockData());	
-				} else {
-					loc.getWorld().spawnParticle(particle, loc, 1, 0, 0, 0, 0.1);
-				}
-			} catch (Exception e) {
-				loc.getWorld().spawnParticle(Particle.VILLAGER_HAPPY, loc, 1, 0, 0, 0, 0.1);
+			Trail.Kind kind;
+			if (dustOptions != null && dustOptions.equals(c)) {
+				kind = Trail.Kind.DUST;
+			} else if (blockData != null && blockData.equals(c)) {
+				kind = Trail.Kind.BLOCK;
+			} else {
+				kind = Trail.Kind.PLAIN;
 			}
+			return new Trail(s, kind, particle, null);
 		} else {
 			Effect particle = null;
+			String name = s;
 			// This effect value crashes clients and prevents them from joining the server again.
 			if (s != null && s.equalsIgnoreCase("ITEM_BREAK")) {
 				s = "HAPPY_VILLAGER";
@@ -70,7 +93,30 @@ public class Particles {
 					particle = Effect.valueOf("HAPPY_VILLAGER");	
 				}
 			}
-			loc.getWorld().playEffect(loc, particle, 1);
+			return new Trail(name, Trail.Kind.LEGACY, null, particle);
+		}
+	}
+	
+	public static void play(Location loc, Trail trail) {
+		try {
+			switch (trail.getKind()) {
+			case DUST:
+				loc.getWorld().spawnParticle(trail.getParticle(), loc, 1, dustColors[ThreadLocalRandom.current().nextInt(dustColors.length)]);
+				break;
+			case BLOCK:
+				loc.getWorld().spawnParticle(trail.getParticle(), loc, 1, stoneData);
+				break;
+			case PLAIN:
+				loc.getWorld().spawnParticle(trail.getParticle(), loc, 1, 0, 0, 0, 0.1);
+				break;
+			case LEGACY:
+				loc.getWorld().playEffect(loc, trail.getEffect(), 1);
+				break;
+			}
+		} catch (Exception e) {
+			if (trail.getKind() != Trail.Kind.LEGACY) {
+				loc.getWorld().spawnParticle(Particle.VILLAGER_HAPPY, loc, 1, 0, 0, 0, 0.1);
+			}
 		}
 	}
 	
@@ -0,0 +1,54 @@
+package com.moneybags.tempfly.aesthetic.particle;
+
+import org.bukkit.Effect;
+import org.bukkit.Particle;
+
+/**
+ * A particle trail that has already been resolved from its name for this server version.
+ * Trails are played every few ticks for every flyer, so the lookups and fallbacks only happen
+ * when the trail is set or loaded. Use Particles.compileTrail(String) to create one.
+ */
+public final class Trail {
+
+	static enum Kind {
+		// Random colored redstone dust.
+		DUST,
+		// Needs block data, stone is used.
+		BLOCK,
+		PLAIN,
+		// Pre 1.9 effect.
+		LEGACY;
+	}
+
+	private final String name;
+	private final Kind kind;
+	private final Particle particle;
+	private final Effect effect;
+
+	Trail(String name, Kind kind, Particle particle, Effect effect) {
+		this.name = name;
+		this.kind = kind;
+		this.particle = particle;
+		this.effect = effect;
+	}
+
+	/**
+	 * @return The name the trail was created from.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	Kind getKind() {
+		return kind;
+	}
+
+	Particle getParticle() {
+		return particle;
+	}
+
+	Effect getEffect() {
+		return effect;
+	}
+
+}
@@ -1,6 +1,10 @@
 package com.moneybags.tempfly.aesthetic.title;
 
-import java.lang.reflect.Constructor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
@@ -10,16 +14,52 @@ import com.moneybags.tempfly.util.U;
 
 public class LegacyTitle implements Title {
 
-    public static void sendPacket(Player player, Object packet) {
+    /*
+     * The nms lookups are resolved once for the server version when the title api is initialized
+     * rather than on every title sent.
+     */
+    private Object
+    timesAction,
+    titleAction,
+    subtitleAction;
+
+    private MethodHandle
+    serializeComponent,
+    timesConstructor,
+    textConstructor,
+    craftPlayerHandle,
+    playerConnectionGetter,
+    sendPacket;
+
+    public LegacyTitle() {
         try {
-            Object handle = player.getClass().getMethod("getHandle").invoke(player);
-            Object playerConnection = handle.getClass().getField("playerConnection").get(handle);
-            playerConnection.getClass().getMethod("sendPacket", getNMSClass("Packet")).invoke(playerConnection, packet);
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            Class<?> packetTitleClass = getNMSClass("PacketPlayOutTitle");
+            Class<?> actionClass = packetTitleClass.getDeclaredClasses()[0];
+            Class<?> componentClass = getNMSClass("IChatBaseComponent");
+
+            timesAction = actionClass.getField("TIMES").get((Object) null);
+            titleAction = actionClass.getField("TITLE").get((Object) null);
+            subtitleAction = actionClass.getField("SUBTITLE").get((Object) null);
+
+            serializeComponent = lookup.unreflect(componentClass.getDeclaredClasses()[0].getMethod("a", new Class[]{String.class}));
+            timesConstructor = lookup.findConstructor(packetTitleClass, MethodType.methodType(void.class, actionClass, componentClass, Integer.TYPE, Integer.TYPE, Integer.TYPE));
+            textConstructor = lookup.findConstructor(packetTitleClass, MethodType.methodType(void.class, actionClass, componentClass));
+
+            Method getHandle = Class.forName(Bukkit.getServer().getClass().getPackage().getName() + ".entity.CraftPlayer").getMethod("getHandle");
+            Field playerConnection = getHandle.getReturnType().getField("playerConnection");
+            craftPlayerHandle = lookup.unreflect(getHandle);
+            playerConnectionGetter = lookup.unreflectGetter(playerConnection);
+            sendPacket = lookup.unreflect(playerConnection.getType().getMethod("sendPacket", getNMSClass("Packet")));
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    private void sendPacket(Player player, Object packet) throws Throwable {
+        sendPacket.invoke(playerConnectionGetter.invoke(craftPlayerHandle.invoke(player)), packet);
+    }
+
     public static Class<?> getNMSClass(String name) {
         String version = Bukkit.getServer().getClass().getPackage().getName().split("\\.")[3];
         try {
@@ -34,51 +74,31 @@ public class LegacyTitle implements Title {
     public void sendTitle(Player player, Integer fadeIn, Integer stay, Integer fadeOut, String title, String subtitle) {
         TitleSendEvent titleSendEvent = new TitleSendEvent(player, title, subtitle);
         Bukkit.getPluginManager().callEvent(titleSendEvent);
-        if (titleSendEvent.isCancelled())
+        if (titleSendEvent.isCancelled() || sendPacket == null)
             return;
 
         try {
-            Object e;
             Object chatTitle;
             Object chatSubtitle;
-			Constructor<?> subtitleConstructor;
-            Object titlePacket;
-            Object subtitlePacket;
 
             if (title != null) {
                 title = U.cc(title);
                 title = title.replaceAll("%player%", player.getDisplayName());
+                chatTitle = serializeComponent.invoke("{\"text\":\"" + title + "\"}");
                 // Times packets
-                e = getNMSClass("PacketPlayOutTitle").getDeclaredClasses()[0].getField("TIMES").get((Object) null);
-                chatTitle = getNMSClass("IChatBaseComponent").getDeclaredClasses()[0].getMethod("a", new Class[]{String.class}).invoke((Object) null, new Object[]{"{\"text\":\"" + title + "\"}"});
-                subtitleConstructor = getNMSClass("PacketPlayOutTitle").getConstructor(new Class[]{getNMSClass("PacketPlayOutTitle").getDeclaredClasses()[0], getNMSClass("IChatBaseComponent"), Integer.TYPE, Integer.TYPE, Integer.TYPE});
-                titlePacket = subtitleConstructor.newInstance(new Object[]{e, chatTitle, fadeIn, stay, fadeOut});
-                sendPacket(player, titlePacket);
-
-                e = getNMSClass("PacketPlayOutTitle").getDeclaredClasses()[0].getField("TITLE").get((Object) null);
-                chatTitle = getNMSClass("IChatBaseComponent").getDeclaredClasses()[0].getMethod("a", new Class[]{String.class}).invoke((Object) null, new Object[]{"{\"text\":\"" + title + "\"}"});
-                subtitleConstructor = getNMSClass("PacketPlayOutTitle").getConstructor(new Class[]{getNMSClass("PacketPlayOutTitle").getDeclaredClasses()[0], getNMSClass("IChatBaseComponent")});
-                titlePacket = subtitleConstructor.newInstance(new Object[]{e, chatTitle});
-                sendPacket(player, titlePacket);
+                sendPacket(player, timesConstructor.invoke(timesAction, chatTitle, (int) fadeIn, (int) stay, (int) fadeOut));
+                sendPacket(player, textConstructor.invoke(titleAction, chatTitle));
             }
 
             if (subtitle != null) {
                 subtitle = U.cc(subtitle);
                 subtitle = subtitle.replaceAll("%player%", player.getDisplayName());
+                chatSubtitle = serializeComponent.invoke("{\"text\":\"" + subtitle + "\"}");
                 // Times packets
-                e = getNMSClass("PacketPlayOutTitle").getDeclaredClasses()[0].getField("TIMES").get((Object) null);
-                chatSubtitle = getNMSClass("IChatBaseComponent").getDeclaredClasses()[0].getMethod("a", new Class[]{String.class}).invoke((Object) null, new Object[]{"{\"text\":\"" + title + "\"}"});
-                subtitleConstructor = getNMSClass("PacketPlayOutTitle").getConstructor(new Class[]{getNMSClass("PacketPlayOutTitle").getDeclaredClasses()[0], getNMSClass("IChatBaseComponent"), Integer.TYPE, Integer.TYPE, Integer.TYPE});
-                subtitlePacket = subtitleConstructor.newInstance(new Object[]{e, chatSubtitle, fadeIn, stay, fadeOut});
-                sendPacket(player, subtitlePacket);
-
-                e = getNMSClass("PacketPlayOutTitle").getDeclaredClasses()[0].getField("SUBTITLE").get((Object) null);
-                chatSubtitle = getNMSClass("IChatBaseComponent").getDeclaredClasses()[0].getMethod("a", new Class[]{String.class}).invoke((Object) null, new Object[]{"{\"text\":\"" + subtitle + "\"}"});
-                subtitleConstructor = getNMSClass("PacketPlayOutTitle").getConstructor(new Class[]{getNMSClass("PacketPlayOutTitle").getDeclaredClasses()[0], getNMSClass("IChatBaseComponent"), Integer.TYPE, Integer.TYPE, Integer.TYPE});
-                subtitlePacket = subtitleConstructor.newInstance(new Object[]{e, chatSubtitle, fadeIn, stay, fadeOut});
-                sendPacket(player, subtitlePacket);
+                sendPacket(player, timesConstructor.invoke(timesAction, chatSubtitle, (int) fadeIn, (int) stay, (int) fadeOut));
+                sendPacket(player, timesConstructor.invoke(subtitleAction, chatSubtitle, (int) fadeIn, (int) stay, (int) fadeOut));
             }
-        } catch (Exception e) {
+        } catch (Throwable e) {
             e.printStackTrace();
         }
     }
@@ -78,7 +78,7 @@ public class CombatHandler implements RequirementProvider, Listener {
 			return;
 		}
 		addTag(p.getUniqueId(), type.isPvp() ? V.combatTagPvp : V.combatTagPve);
-		user.submitFlightResult(new ResultDeny(DenyReason.COMBAT, this, InquiryType.OUT_OF_SCOPE, V.requireFailCombat, !V.damageCombat));
+		user.submitFlightResult(ResultDeny.of(DenyReason.COMBAT, this, InquiryType.OUT_OF_SCOPE, V.requireFailCombat, !V.damageCombat));
 	}
 	
 	public boolean combatDisable(CombatType type) {
@@ -173,11 +173,11 @@ public class CombatHandler implements RequirementProvider, Listener {
 		if (!isTagged(user.getPlayer().getUniqueId())) {
 			if (user.hasFlightRequirement(this)) {
 				Console.debug("", "--|> User has combat requirement but is no longer tagged!");
-				user.submitFlightResult(new ResultAllow(this, InquiryType.OUT_OF_SCOPE, V.requirePassCombat));	
+				user.submitFlightResult(ResultAllow.of(this, InquiryType.OUT_OF_SCOPE, V.requirePassCombat));	
 			}
 			return;
 		} 
-		user.submitFlightResult(new ResultDeny(DenyReason.COMBAT, this, InquiryType.OUT_OF_SCOPE, V.requireFailCombat, !V.damageCombat));
+		user.submitFlightResult(ResultDeny.of(DenyReason.COMBAT, this, InquiryType.OUT_OF_SCOPE, V.requireFailCombat, !V.damageCombat));
 	}
 	
 	@Override
@@ -188,7 +188,7 @@ public class CombatHandler implements RequirementProvider, Listener {
 	@Override
 	public void onUserInitialized(FlightUser user) {
 		if (tags.containsKey(user.getPlayer().getUniqueId())) {
-			user.submitFlightResult(new ResultDeny(DenyReason.COMBAT, this, InquiryType.OUT_OF_SCOPE, V.requireFailCombat, false));
+			user.submitFlightResult(ResultDeny.of(DenyReason.COMBAT, this, InquiryType.OUT_OF_SCOPE, V.requireFailCombat, false));
 		}
 	}
 }
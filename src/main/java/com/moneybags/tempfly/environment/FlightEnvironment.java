@@ -1,14 +1,21 @@
 package com.moneybags.tempfly.environment;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.configuration.ConfigurationSection;
 
+import com.moneybags.tempfly.environment.zone.FlightZone;
+import com.moneybags.tempfly.environment.zone.ZoneTree;
 import com.moneybags.tempfly.fly.FlightManager;
 import com.moneybags.tempfly.fly.RequirementProvider;
 import com.moneybags.tempfly.fly.result.FlightResult;
@@ -16,6 +23,8 @@ import com.moneybags.tempfly.fly.result.FlightResult.DenyReason;
 import com.moneybags.tempfly.fly.result.ResultAllow;
 import com.moneybags.tempfly.fly.result.ResultDeny;
 import com.moneybags.tempfly.hook.region.CompatRegion;
+import com.moneybags.tempfly.hook.region.RegionIds;
+import com.moneybags.tempfly.hook.region.RegionSet;
 import com.moneybags.tempfly.user.FlightUser;
 import com.moneybags.tempfly.util.Console;
 import com.moneybags.tempfly.util.V;
@@ -28,21 +37,23 @@ public class FlightEnvironment implements RequirementProvider {
 	private Map<String, RelativeTimeRegion> rtRegions = new HashMap<>();
 	private Map<String, RelativeTimeRegion> rtWorlds = new HashMap<>();
 	
-	private List<String> blackRegions = new ArrayList<>();
-	private List<String> blackWorlds = new ArrayList<>();
-	
-	private List<String> whiteRegions = new ArrayList<>();
-	private List<String> whiteWorlds = new ArrayList<>();
-	
-	private List<String> freeRegions = new ArrayList<>();
-	private List<String> freeWorlds = new ArrayList<>();
-	
-	
-	
 	private float speedGlobal = 1;
 	private boolean allowPreferredSpeed;
-	private Map<String, Float> speedWorlds = new HashMap<>();
-	private Map<String, Float> speedRegions = new HashMap<>();
+	
+	/*
+	 * The config compiled into one policy per world and per region, see compilePolicies().
+	 * Region policies are indexed by the interned region id. Worlds and regions not mentioned
+	 * in the config use the default policies.
+	 */
+	private Map<String, FlightPolicy> worldPolicies = new HashMap<>();
+	private FlightPolicy defaultWorldPolicy = new FlightPolicy(false, true, false, Float.NaN, null);
+	private FlightPolicy[] regionPolicies = new FlightPolicy[0];
+	private FlightPolicy defaultRegionPolicy = new FlightPolicy(false, true, false, Float.NaN, null);
+	// Combined policies of region sets players have been in.
+	private Map<RegionSet, FlightPolicy> regionSetPolicies = new ConcurrentHashMap<>();
+	// The flight zones from the config by world name, replaced as a whole on reload.
+	private volatile Map<String, ZoneTree> zones = new HashMap<>();
+	private static final CompatRegion[] NO_ZONES = new CompatRegion[0];
 	
 	
 	public FlightEnvironment(FlightManager manager) {
@@ -79,7 +90,7 @@ public class FlightEnvironment implements RequirementProvider {
 	}
 	
 	public boolean hasRelativeTime(CompatRegion region) {
-		return rtRegions.containsKey(region.getId());
+		return getPolicy(region).getRelativeTime().length > 0;
 	}
 	
 	public RelativeTimeRegion getRelativeTime(World world) {
@@ -87,7 +98,8 @@ public class FlightEnvironment implements RequirementProvider {
 	}
 	
 	public RelativeTimeRegion getRelativeTime(CompatRegion region) {
-		return rtRegions.get(region.getId());
+		RelativeTimeRegion[] rt = getPolicy(region).getRelativeTime();
+		return rt.length > 0 ? rt[0] : null;
 	}
 	
 	
@@ -103,11 +115,11 @@ public class FlightEnvironment implements RequirementProvider {
 	
 	
 	public boolean isDisabled(World world) {
-		return blackWorlds.contains(world.getName());
+		return getPolicy(world).isDisabled();
 	}
 	
 	public boolean isDisabled(CompatRegion region) {
-		return blackRegions.contains(region.getId());
+		return getPolicy(region).isDisabled();
 	}
 	
 	
@@ -121,11 +133,11 @@ public class FlightEnvironment implements RequirementProvider {
 	 */
 
 	public boolean isWhitelisted(World world) {
-		return whiteWorlds.size() == 0 || whiteWorlds.contains(world.getName());
+		return getPolicy(world).isWhitelisted();
 	}
 	
 	public boolean isWhitelisted(CompatRegion region) {
-		return whiteRegions.size() == 0 || whiteRegions.contains(region.getId());
+		return getPolicy(region).isWhitelisted();
 	}
 	
 	
@@ -139,11 +151,11 @@ public class FlightEnvironment implements RequirementProvider {
 	 */
 	
 	public boolean isInfinite(World world) {
-		return freeWorlds.contains(world.getName());
+		return getPolicy(world).isInfinite();
 	}
 	
 	public boolean isInfinite(CompatRegion region) {
-		return freeRegions.contains(region.getId());
+		return getPolicy(region).isInfinite();
 	}
 	
 	
@@ -158,12 +170,11 @@ public class FlightEnvironment implements RequirementProvider {
 	
 	
 	public boolean hasMaxSpeed(World world) {
-		return speedWorlds.containsKey(world.getName());
+		return getPolicy(world).hasMaxSpeed();
 	}
 	
 	public boolean hasMaxSpeed(CompatRegion region) {
-		//Console.debug(region.getId(), speedRegions.containsKey(region.getId()));
-		return speedRegions.containsKey(region.getId());
+		return getPolicy(region).hasMaxSpeed();
 	}
 	
 	public boolean hasMaxSpeed(CompatRegion[] regions) {
@@ -180,19 +191,19 @@ public class FlightEnvironment implements RequirementProvider {
 	}
 	
 	public float getMaxSpeed(World world) {
-		return speedWorlds.getOrDefault(world.getName(), getDefaultSpeed());
+		return getPolicy(world).getMaxSpeed(getDefaultSpeed());
 	}
 	
 	public float getMaxSpeed(CompatRegion region) {
-		//Console.debug(region.getId(), speedRegions.get(region.getId()));
-		return speedRegions.getOrDefault(region.getId(), getDefaultSpeed());
+		return getPolicy(region).getMaxSpeed(getDefaultSpeed());
 	}
 	
 	public float getMaxSpeed(CompatRegion[] regions) {
 		float highest = -999;
 		for (CompatRegion region: regions) {
-			if (hasMaxSpeed(region)) {
-				float speed = getMaxSpeed(region);
+			FlightPolicy policy = getPolicy(region);
+			if (policy.hasMaxSpeed()) {
+				float speed = policy.getMaxSpeed(getDefaultSpeed());
 				if (highest == -999 || highest < speed) {
 					highest = speed;
 				}
@@ -207,6 +218,119 @@ public class FlightEnvironment implements RequirementProvider {
 	
 	
 	
+	/**
+	 * 
+	 * --=------------=--
+	 *     Policies
+	 * --=------------=--
+	 * 
+	 */
+	
+	
+	
+	public FlightPolicy getPolicy(World world) {
+		return worldPolicies.getOrDefault(world.getName(), defaultWorldPolicy);
+	}
+	
+	public FlightPolicy getPolicy(CompatRegion region) {
+		int index = region.getIndex();
+		FlightPolicy policy = index < regionPolicies.length ? regionPolicies[index] : null;
+		return policy == null ? defaultRegionPolicy : policy;
+	}
+	
+	/**
+	 * The combined policy of every region in the set, see FlightPolicy.combine().
+	 * These are remembered until tempfly reloads.
+	 * @param regions The set of regions
+	 * @return The combined policy
+	 */
+	public FlightPolicy getPolicy(RegionSet regions) {
+		Map<RegionSet, FlightPolicy> memo = regionSetPolicies;
+		FlightPolicy policy = memo.get(regions);
+		if (policy == null) {
+			CompatRegion[] array = regions.getRegions();
+			FlightPolicy[] policies = new FlightPolicy[array.length];
+			for (int i = 0; i < array.length; i++) {
+				policies[i] = getPolicy(array[i]);
+			}
+			memo.put(regions, policy = FlightPolicy.combine(policies));
+		}
+		return policy;
+	}
+	
+	
+	
+	/**
+	 * 
+	 * --=------------=--
+	 *   Flight Zones
+	 * --=------------=--
+	 * 
+	 */
+	
+	
+	
+	public boolean hasZones() {
+		return !zones.isEmpty();
+	}
+	
+	/**
+	 * @param loc The location
+	 * @return The regions of the flight zones containing the location. The array may be shared and must not be modified.
+	 */
+	public CompatRegion[] getZoneRegions(Location loc) {
+		ZoneTree tree = loc.getWorld() == null ? null : zones.get(loc.getWorld().getName());
+		return tree == null ? NO_ZONES : tree.getRegionsAt(loc.getX(), loc.getY(), loc.getZ());
+	}
+	
+	/**
+	 * Load the flight zones from the config, the settings written on each zone are added to the region settings under the zone name.
+	 */
+	private Map<String, ZoneTree> loadZones(List<String> blackRegions, List<String> whiteRegions, List<String> freeRegions, Map<String, Float> speedRegions) {
+		Map<String, List<FlightZone>> byWorld = new HashMap<>();
+		ConfigurationSection csZones = Files.config.getConfigurationSection("general.zones");
+		if (csZones != null) {
+			for (String name : csZones.getKeys(false)) {
+				ConfigurationSection csZone = csZones.getConfigurationSection(name);
+				if (csZone == null) {
+					Console.warn("An invalid flight zone is defined in the config! (" + name + ")");
+					continue;
+				}
+				FlightZone zone;
+				try {
+					zone = FlightZone.load(name, csZone);
+				} catch (IllegalArgumentException e) {
+					Console.warn("An invalid flight zone is defined in the config! (" + name + ": " + e.getMessage() + ")");
+					continue;
+				}
+				byWorld.computeIfAbsent(zone.getWorld(), world -> new ArrayList<>()).add(zone);
+				if (zone.isDisabled()) {
+					blackRegions.add(name);
+				}
+				if (zone.isWhitelist()) {
+					whiteRegions.add(name);
+				}
+				if (zone.isInfinite()) {
+					freeRegions.add(name);
+				}
+				if (zone.hasSpeed()) {
+					speedRegions.put(name, (float) zone.getSpeed());
+				}
+				if (zone.hasTimeFactor()) {
+					rtRegions.put(name, new RelativeTimeRegion(zone.getTimeFactor(), false, name));
+				}
+			}
+		}
+		Map<String, ZoneTree> zones = new HashMap<>();
+		for (Map.Entry<String, List<FlightZone>> entry : byWorld.entrySet()) {
+			zones.put(entry.getKey(), new ZoneTree(entry.getValue()));
+			Console.debug("--| Loaded " + entry.getValue().size() + " flight zones in world: " + entry.getKey());
+		}
+		return zones;
+	}
+	
+	
+	
 	/**
 	 * 
 	 * --=--------------------=--
@@ -228,7 +352,7 @@ public class FlightEnvironment implements RequirementProvider {
 	public boolean flyAllowed(Location loc) {
 		if (manager.getTempFly().getHookManager().hasRegionProvider()) {
 			for (CompatRegion r: manager.getTempFly().getHookManager().getRegionProvider().getApplicableRegions(loc)) {
-				if (blackRegions.contains(r.getId())) {
+				if (isDisabled(r)) {
 					return false;
 				}
 			}
@@ -247,7 +371,7 @@ public class FlightEnvironment implements RequirementProvider {
 				return result;
 			}
 		}
-		return new ResultAllow(this, InquiryType.REGION, V.requirePassDefault);
+		return ResultAllow.of(this, InquiryType.REGION, V.requirePassDefault);
 	}
 
 	/**
@@ -255,8 +379,8 @@ public class FlightEnvironment implements RequirementProvider {
 	 */
 	@Override
 	public FlightResult handleFlightInquiry(FlightUser user, CompatRegion r) {
-		return isDisabled(r) || !isWhitelisted(r) ? new ResultDeny(DenyReason.DISABLED_REGION, this, InquiryType.REGION, V.requireFailRegion, !V.damageRegion)
-				: new ResultAllow(this, InquiryType.REGION, V.requirePassDefault);
+		return !getPolicy(r).isAllowed() ? ResultDeny.of(DenyReason.DISABLED_REGION, this, InquiryType.REGION, V.requireFailRegion, !V.damageRegion)
+				: ResultAllow.of(this, InquiryType.REGION, V.requirePassDefault);
 	}
 
 	/**
@@ -264,8 +388,8 @@ public class FlightEnvironment implements RequirementProvider {
 	 */
 	@Override
 	public FlightResult handleFlightInquiry(FlightUser user, World world) {
-		return isDisabled(world) || !isWhitelisted(world) ? new ResultDeny(DenyReason.DISABLED_WORLD, this, InquiryType.WORLD, V.requireFailWorld, !V.damageWorld)
-				: new ResultAllow(this, InquiryType.WORLD, V.requirePassDefault);
+		return !getPolicy(world).isAllowed() ? ResultDeny.of(DenyReason.DISABLED_WORLD, this, InquiryType.WORLD, V.requireFailWorld, !V.damageWorld)
+				: ResultAllow.of(this, InquiryType.WORLD, V.requirePassDefault);
 	}
 
 	/**
@@ -273,35 +397,58 @@ public class FlightEnvironment implements RequirementProvider {
 	 */
 	@Override
 	public FlightResult handleFlightInquiry(FlightUser user, Location loc) {
-		if (user.hasFlightRequirement(this, InquiryType.LOCATION)) {
-			return loc.getBlockY() <= V.maxY-5 ? new ResultAllow(this, InquiryType.LOCATION, V.requirePassDefault) :
-				new ResultDeny(DenyReason.OTHER, this, InquiryType.LOCATION, 
+		return handleFlightInquiry(user, loc, user.hasFlightRequirement(this, InquiryType.LOCATION));
+	}
+	
+	/**
+	 * max y, called off the main thread. The user is not touched here.
+	 */
+	@Override
+	public FlightResult handleFlightInquiry(FlightUser user, Location loc, boolean required) {
+		if (required) {
+			return loc.getBlockY() <= V.maxY-5 ? ResultAllow.of(this, InquiryType.LOCATION, V.requirePassDefault) :
+				ResultDeny.of(DenyReason.OTHER, this, InquiryType.LOCATION, 
 					V.requireFailHeight.replaceAll("\\{MAX_Y}", String.valueOf(V.maxY)), false);
 		}
-		return loc.getBlockY() > V.maxY ? new ResultDeny(DenyReason.OTHER, this, InquiryType.LOCATION, 
+		return loc.getBlockY() > V.maxY ? ResultDeny.of(DenyReason.OTHER, this, InquiryType.LOCATION, 
 				V.requireFailHeight.replaceAll("\\{MAX_Y}", String.valueOf(V.maxY)), false) 
-				: new ResultAllow(this, InquiryType.LOCATION, V.requirePassDefault);
+				: ResultAllow.of(this, InquiryType.LOCATION, V.requirePassDefault);
 	}
 	
 	@Override
 	public boolean handles(InquiryType type) {
 		return false;
 	}
+	
+	// Only the max height is checked at the players location.
+	private static final Set<InquiryKey> LOCATION_KEYS = Collections.unmodifiableSet(EnumSet.of(InquiryKey.BLOCK_Y));
+	
+	@Override
+	public Set<InquiryKey> getLocationKeys() {
+		return LOCATION_KEYS;
+	}
+	
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
 
 	@Override
 	public void onTempflyReload() {
-		blackRegions = Files.config.contains("general.disabled.regions") ? Files.config.getStringList("general.disabled.regions") : new ArrayList<>();
-		blackWorlds = Files.config.contains("general.disabled.worlds") ? Files.config.getStringList("general.disabled.worlds") : new ArrayList<>();
+		List<String> blackRegions = Files.config.contains("general.disabled.regions") ? Files.config.getStringList("general.disabled.regions") : new ArrayList<>();
+		List<String> blackWorlds = Files.config.contains("general.disabled.worlds") ? Files.config.getStringList("general.disabled.worlds") : new ArrayList<>();
 		
-		whiteRegions = Files.config.contains("general.whitelist.regions") ? Files.config.getStringList("general.whitelist.regions") : new ArrayList<>();
-		whiteWorlds = Files.config.contains("general.whitelist.worlds") ? Files.config.getStringList("general.whitelist.worlds") : new ArrayList<>();
-	
-		whiteRegions = Files.config.contains("general.whitelist.regions") ? Files.config.getStringList("general.whitelist.regions") : new ArrayList<>();
-		whiteWorlds = Files.config.contains("general.whitelist.worlds") ? Files.config.getStringList("general.whitelist.worlds") : new ArrayList<>();
+		List<String> whiteRegions = Files.config.contains("general.whitelist.regions") ? Files.config.getStringList("general.whitelist.regions") : new ArrayList<>();
+		List<String> whiteWorlds = Files.config.contains("general.whitelist.worlds") ? Files.config.getStringList("general.whitelist.worlds") : new ArrayList<>();
+		
+		List<String> freeRegions = Files.config.contains("general.time.infinite.regions") ? Files.config.getStringList("general.time.infinite.regions") : new ArrayList<>();
+		List<String> freeWorlds = Files.config.contains("general.time.infinite.worlds") ? Files.config.getStringList("general.time.infinite.worlds") : new ArrayList<>();
 		
-		freeRegions = Files.config.contains("general.time.infinite.regions") ? Files.config.getStringList("general.time.infinite.regions") : new ArrayList<>();
-		freeWorlds = Files.config.contains("general.time.infinite.worlds") ? Files.config.getStringList("general.time.infinite.worlds") : new ArrayList<>();
+		Map<String, Float> speedWorlds = new HashMap<>();
+		Map<String, Float> speedRegions = new HashMap<>();
 		
+		rtWorlds.clear();
+		rtRegions.clear();
 		ConfigurationSection csRtW = Files.config.getConfigurationSection("other.relative_time.worlds");
 		if (csRtW != null) {
 			for (String s : csRtW.getKeys(false)) {
@@ -310,7 +457,7 @@ public class FlightEnvironment implements RequirementProvider {
 			}
 		}
 		ConfigurationSection csRtR = Files.config.getConfigurationSection("other.relative_time.regions");
-		if (csRtW != null) {
+		if (csRtR != null) {
 			for (String s : csRtR.getKeys(false)) {
 				rtRegions.put(s, new RelativeTimeRegion(
 						Files.config.getDouble("other.relative_time.regions." + s, 1), false, s));
@@ -341,7 +488,47 @@ public class FlightEnvironment implements RequirementProvider {
 		
 		allowPreferredSpeed = Files.config.getBoolean("general.flight.speed.user_preference", true);
 		
+		Map<String, ZoneTree> zones = loadZones(blackRegions, whiteRegions, freeRegions, speedRegions);
+		
+		// Worlds
+		Set<String> names = new HashSet<>();
+		names.addAll(blackWorlds);
+		names.addAll(whiteWorlds);
+		names.addAll(freeWorlds);
+		names.addAll(speedWorlds.keySet());
+		names.addAll(rtWorlds.keySet());
+		Map<String, FlightPolicy> worldPolicies = new HashMap<>();
+		for (String name : names) {
+			worldPolicies.put(name, new FlightPolicy(blackWorlds.contains(name), whiteWorlds.isEmpty() || whiteWorlds.contains(name),
+					freeWorlds.contains(name), speedWorlds.getOrDefault(name, Float.NaN), rtWorlds.get(name)));
+		}
+		
+		// Regions
+		names.clear();
+		names.addAll(blackRegions);
+		names.addAll(whiteRegions);
+		names.addAll(freeRegions);
+		names.addAll(speedRegions.keySet());
+		names.addAll(rtRegions.keySet());
+		Map<Integer, FlightPolicy> byIndex = new HashMap<>();
+		int highest = -1;
+		for (String name : names) {
+			int index = RegionIds.intern(name);
+			highest = Math.max(highest, index);
+			byIndex.put(index, new FlightPolicy(blackRegions.contains(name), whiteRegions.isEmpty() || whiteRegions.contains(name),
+					freeRegions.contains(name), speedRegions.getOrDefault(name, Float.NaN), rtRegions.get(name)));
+		}
+		FlightPolicy[] regionPolicies = new FlightPolicy[highest + 1];
+		for (Map.Entry<Integer, FlightPolicy> entry : byIndex.entrySet()) {
+			regionPolicies[entry.getKey()] = entry.getValue();
+		}
 		
+		this.worldPolicies = worldPolicies;
+		this.defaultWorldPolicy = new FlightPolicy(false, whiteWorlds.isEmpty(), false, Float.NaN, null);
+		this.regionPolicies = regionPolicies;
+		this.defaultRegionPolicy = new FlightPolicy(false, whiteRegions.isEmpty(), false, Float.NaN, null);
+		this.regionSetPolicies = new ConcurrentHashMap<>();
+		this.zones = zones;
 	}
 	
 	
@@ -0,0 +1,116 @@
+package com.moneybags.tempfly.environment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Everything the config says about flight in a single world, region or set of regions.
+ * These are compiled by the FlightEnvironment when tempfly loads so one lookup answers every question
+ * instead of searching each config list separately.
+ */
+public final class FlightPolicy {
+
+	private static final RelativeTimeRegion[] NO_RELATIVE_TIME = new RelativeTimeRegion[0];
+	
+	private final boolean
+	disabled,
+	whitelisted,
+	infinite;
+	
+	// NaN if there is no max speed.
+	private final float maxSpeed;
+	private final RelativeTimeRegion[] relativeTime;
+	private final double timeFactor;
+	
+	FlightPolicy(boolean disabled, boolean whitelisted, boolean infinite, float maxSpeed, RelativeTimeRegion relativeTime) {
+		this(disabled, whitelisted, infinite, maxSpeed,
+				relativeTime == null ? NO_RELATIVE_TIME : new RelativeTimeRegion[] {relativeTime});
+	}
+	
+	private FlightPolicy(boolean disabled, boolean whitelisted, boolean infinite, float maxSpeed, RelativeTimeRegion[] relativeTime) {
+		this.disabled = disabled;
+		this.whitelisted = whitelisted;
+		this.infinite = infinite;
+		this.maxSpeed = maxSpeed;
+		this.relativeTime = relativeTime;
+		double factor = 1;
+		for (RelativeTimeRegion rt : relativeTime) {
+			factor *= rt.getFactor();
+		}
+		this.timeFactor = factor;
+	}
+	
+	/**
+	 * Combine the policies of every region in a set.
+	 * Flight is disabled if any region is disabled or not whitelisted, it is infinite if any region is infinite,
+	 * the highest max speed wins and relative time factors are multiplied together.
+	 * @param policies The policy of each region
+	 * @return The policy of the set
+	 */
+	static FlightPolicy combine(FlightPolicy[] policies) {
+		boolean disabled = false, whitelisted = true, infinite = false;
+		float maxSpeed = Float.NaN;
+		List<RelativeTimeRegion> relativeTime = new ArrayList<>();
+		for (FlightPolicy policy : policies) {
+			disabled |= policy.disabled;
+			whitelisted &= policy.whitelisted;
+			infinite |= policy.infinite;
+			if (policy.hasMaxSpeed() && (Float.isNaN(maxSpeed) || policy.maxSpeed > maxSpeed)) {
+				maxSpeed = policy.maxSpeed;
+			}
+			for (RelativeTimeRegion rt : policy.relativeTime) {
+				if (!relativeTime.contains(rt)) {
+					relativeTime.add(rt);
+				}
+			}
+		}
+		return new FlightPolicy(disabled, whitelisted, infinite, maxSpeed,
+				relativeTime.isEmpty() ? NO_RELATIVE_TIME : relativeTime.toArray(new RelativeTimeRegion[relativeTime.size()]));
+	}
+	
+	public boolean isDisabled() {
+		return disabled;
+	}
+	
+	public boolean isWhitelisted() {
+		return whitelisted;
+	}
+	
+	/**
+	 * @return true if flight is not disabled and is whitelisted.
+	 */
+	public boolean isAllowed() {
+		return !disabled && whitelisted;
+	}
+	
+	public boolean isInfinite() {
+		return infinite;
+	}
+	
+	public boolean hasMaxSpeed() {
+		return !Float.isNaN(maxSpeed);
+	}
+	
+	/**
+	 * @param def The speed to return if there is no max speed.
+	 * @return The max speed
+	 */
+	public float getMaxSpeed(float def) {
+		return hasMaxSpeed() ? maxSpeed : def;
+	}
+	
+	/**
+	 * @return The relative time regions that apply. This array is shared and must not be modified.
+	 */
+	public RelativeTimeRegion[] getRelativeTime() {
+		return relativeTime;
+	}
+	
+	/**
+	 * @return Every relative time factor that applies multiplied together.
+	 */
+	public double getTimeFactor() {
+		return timeFactor;
+	}
+	
+}
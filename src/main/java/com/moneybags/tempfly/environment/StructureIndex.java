@@ -0,0 +1,201 @@
+package com.moneybags.tempfly.environment;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import com.moneybags.tempfly.TempFly;
+import com.moneybags.tempfly.util.Console;
+import com.moneybags.tempfly.util.V;
+
+/**
+ * The structures found in a single world, grouped by the region file they are in.
+ * Each region remembers which structure types it has been scanned for so a structure type added to the config
+ * later is still searched for, and the index is saved to the structures folder so nothing is searched for twice.
+ * A structure is always kept under the region it lies in, even when it was found while scanning a neighbour.
+ * 
+ * The index is loaded and saved on a separate thread, it can't be queried until it has been loaded.
+ */
+public class StructureIndex {
+
+	public static final int REGION_SHIFT = 9;
+	// Indexes saved before this version could mark regions as scanned without every structure in them being found.
+	private static final int VERSION = 3;
+	
+	private final TempFly tempfly;
+	private final File file;
+	private final Map<Long, IndexedRegion> regions = new ConcurrentHashMap<>();
+	private volatile boolean loaded;
+	private boolean dirty;
+	
+	public StructureIndex(TempFly tempfly, World world) {
+		this.tempfly = tempfly;
+		this.file = new File(new File(tempfly.getDataFolder(), "structures"), world.getName() + ".yml");
+		Bukkit.getScheduler().runTaskAsynchronously(tempfly, this::load);
+	}
+	
+	private void load() {
+		if (file.exists()) {
+			YamlConfiguration yaml = YamlConfiguration.loadConfiguration(file);
+			boolean outdated = yaml.getInt("version", 1) < VERSION;
+			ConfigurationSection csRegions = yaml.getConfigurationSection("regions");
+			if (csRegions != null) {
+				for (String key: csRegions.getKeys(false)) {
+					String[] coords = key.split("_");
+					try {
+						IndexedRegion region = new IndexedRegion();
+						if (!outdated) {
+							region.scanned.addAll(csRegions.getStringList(key + ".scanned"));
+						}
+						for (String struct: csRegions.getStringList(key + ".structures")) {
+							String[] parts = struct.split(";");
+							region.structures.add(new IndexedStructure(parts[0], Integer.parseInt(parts[1]), Integer.parseInt(parts[2])));
+						}
+						regions.put(toKey(Integer.parseInt(coords[0]), Integer.parseInt(coords[1])), region);
+					} catch (Exception e) {
+						Console.warn("An invalid region is saved in the structure index (" + file.getName() + ": " + key + ")");
+					}
+				}
+			}
+		}
+		loaded = true;
+		Console.debug("--| Loaded " + regions.size() + " regions from the structure index: " + file.getName());
+	}
+	
+	public boolean isLoaded() {
+		return loaded;
+	}
+	
+	/**
+	 * @param regionX The region x coordinate
+	 * @param regionZ The region z coordinate
+	 * @return The indexed region, null if it has not been scanned for anything yet.
+	 */
+	public IndexedRegion getRegion(int regionX, int regionZ) {
+		return regions.get(toKey(regionX, regionZ));
+	}
+	
+	/**
+	 * Record that every structure of a type in a region has been found.
+	 * @param regionX The region x coordinate
+	 * @param regionZ The region z coordinate
+	 * @param type The name of the structure type
+	 */
+	public synchronized void markScanned(int regionX, int regionZ, String type) {
+		regions.computeIfAbsent(toKey(regionX, regionZ), key -> new IndexedRegion()).scanned.add(type);
+		dirty = true;
+	}
+	
+	/**
+	 * Add a structure to the region it lies in.
+	 * @param type The name of the structure type
+	 * @param found The location of the structure
+	 * @return true if the structure was not indexed yet.
+	 */
+	public synchronized boolean addStructure(String type, Location found) {
+		int x = found.getBlockX(), z = found.getBlockZ();
+		IndexedRegion region = regions.computeIfAbsent(toKey(x >> REGION_SHIFT, z >> REGION_SHIFT), key -> new IndexedRegion());
+		for (IndexedStructure struct: region.structures) {
+			if (struct.x == x && struct.z == z && struct.type.equals(type)) {
+				return false;
+			}
+		}
+		region.structures.add(new IndexedStructure(type, x, z));
+		dirty = true;
+		return true;
+	}
+	
+	/**
+	 * Save the index if anything has changed since it was last saved.
+	 * @param async Whether the file should be written on another thread.
+	 */
+	public synchronized void save(boolean async) {
+		if (!dirty || !loaded) {
+			return;
+		}
+		dirty = false;
+		YamlConfiguration yaml = new YamlConfiguration();
+		yaml.set("version", VERSION);
+		for (Map.Entry<Long, IndexedRegion> entry: regions.entrySet()) {
+			long key = entry.getKey();
+			String path = "regions." + (int) (key >> 32) + "_" + (int) key;
+			IndexedRegion region = entry.getValue();
+			List<String> structures = new ArrayList<>();
+			for (IndexedStructure struct: region.structures) {
+				structures.add(struct.type + ";" + struct.x + ";" + struct.z);
+			}
+			yaml.set(path + ".scanned", new ArrayList<>(region.scanned));
+			yaml.set(path + ".structures", structures);
+		}
+		Runnable write = () -> {
+			try {
+				file.getParentFile().mkdirs();
+				yaml.save(file);
+			} catch (Exception e) {
+				Console.severe("There was an error while saving the structure index: " + file.getName());
+				if (V.debug) {
+					e.printStackTrace();
+				}
+			}
+		};
+		if (async) {
+			Bukkit.getScheduler().runTaskAsynchronously(tempfly, write);
+		} else {
+			write.run();
+		}
+	}
+	
+	public static long toKey(int regionX, int regionZ) {
+		return ((long) regionX << 32) | (regionZ & 0xFFFFFFFFL);
+	}
+	
+	public static class IndexedRegion {
+		
+		// Written on the main thread when a scan finishes and read by the move path.
+		private final Set<String> scanned = ConcurrentHashMap.newKeySet();
+		private final List<IndexedStructure> structures = new CopyOnWriteArrayList<>();
+		
+		public boolean isScanned(String type) {
+			return scanned.contains(type);
+		}
+		
+		public List<IndexedStructure> getStructures() {
+			return structures;
+		}
+	}
+	
+	public static class IndexedStructure {
+		
+		private final String type;
+		private final int x, z;
+		
+		private IndexedStructure(String type, int x, int z) {
+			this.type = type;
+			this.x = x;
+			this.z = z;
+		}
+		
+		public String getType() {
+			return type;
+		}
+		
+		public int getX() {
+			return x;
+		}
+		
+		public int getZ() {
+			return z;
+		}
+	}
+	
+}
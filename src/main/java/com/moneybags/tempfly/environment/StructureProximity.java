@@ -1,15 +1,27 @@
 package com.moneybags.tempfly.environment;
 
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.UUID;
 
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.StructureType;
 import org.bukkit.World;
 import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
 
+import com.moneybags.tempfly.environment.StructureIndex.IndexedRegion;
+import com.moneybags.tempfly.environment.StructureIndex.IndexedStructure;
 import com.moneybags.tempfly.fly.FlightManager;
 import com.moneybags.tempfly.fly.RequirementProvider;
 import com.moneybags.tempfly.fly.result.FlightResult;
@@ -21,16 +33,46 @@ import com.moneybags.tempfly.util.Console;
 import com.moneybags.tempfly.util.V;
 import com.moneybags.tempfly.util.data.Files;
 
+/**
+ * Denies flight within range of the structure types in the config.
+ * Searching the world for structures is far too slow to do as players move, so structures are looked up once per
+ * region file and kept in a StructureIndex for each world. A move only checks the indexed structures near the player.
+ * Regions that have not been scanned yet are queued and searched a few chunks at a time under a per tick budget,
+ * players near a structure that is found are evaluated again once it is indexed.
+ */
 public class StructureProximity implements RequirementProvider {
 	
+	// Structure lookups go through the world so they must run on the main thread.
+	// How long in nanoseconds scanning may take each tick, at least one area is always searched.
+	private static final long BUDGET = 2000000;
+	private static final int REGION_CHUNK_SHIFT = StructureIndex.REGION_SHIFT - 4;
+	// A region is searched in areas of 16x16 chunks. Structures are placed at most one per cell of a grid, and the
+	// cells of every spread out structure type are at least 20 chunks wide, so an area overlaps at most 2x2 cells
+	// and each of them holds one of the corners of the area. A search with a radius of 0 only looks at the cell of the
+	// chunk it starts from, so searching from the four corners finds every structure in the area.
+	private static final int AREA_SHIFT = 4;
+	// These types can start in neighbouring chunks, they are searched for one chunk at a time.
+	private static final Set<StructureType> DENSE = new HashSet<>(Arrays.asList(StructureType.MINESHAFT,
+			StructureType.BURIED_TREASURE, StructureType.NETHER_FOSSIL));
+	// Time in ticks between saving the structure indexes.
+	private static final long SAVE_INTERVAL = 20 * 60 * 5;
+	
 	private FlightManager manager;
 	
+	// The range of each structure type in chunks.
 	private Map<StructureType, Integer> structs = new HashMap<>();
+	private final Map<UUID, StructureIndex> indexes = new HashMap<>();
+	
+	private final Deque<Scan> scans = new ArrayDeque<>();
+	private final Set<Scan> queued = new HashSet<>();
+	private final BukkitTask scanner, saver;
 	
 	public StructureProximity(FlightManager manager) throws NoSuchMethodException, SecurityException, ClassNotFoundException {
 		this.manager = manager;
 		Class.forName("org.bukkit.World").getMethod("locateNearestStructure", Location.class, StructureType.class, Integer.TYPE, Boolean.TYPE);
 		onTempflyReload();
+		this.scanner = Bukkit.getScheduler().runTaskTimer(manager.getTempFly(), this::scan, 1, 1);
+		this.saver = Bukkit.getScheduler().runTaskTimer(manager.getTempFly(), () -> save(true), SAVE_INTERVAL, SAVE_INTERVAL);
 	}
 	
 	public FlightManager getFlightManager() {
@@ -40,16 +82,168 @@ public class StructureProximity implements RequirementProvider {
 	@Override
 	public FlightResult handleFlightInquiry(FlightUser user, Location loc) {
 		World world = loc.getWorld();
+		if (structs.isEmpty() || world == null) {
+			return ResultAllow.of(this, InquiryType.LOCATION, V.requirePassDefault);
+		}
+		StructureIndex index = getIndex(world);
+		if (!index.isLoaded()) {
+			return ResultAllow.of(this, InquiryType.LOCATION, V.requirePassDefault);
+		}
+		// The range is in chunks and the result is cached per chunk, so only the chunks are compared.
+		int cx = loc.getBlockX() >> 4, cz = loc.getBlockZ() >> 4;
+		int shift = REGION_CHUNK_SHIFT;
 		for (Entry<StructureType, Integer> entry: structs.entrySet()) {
-			Location closest = world.locateNearestStructure(loc, entry.getKey(), entry.getValue(), false);
-			if (closest != null) {
-				Bukkit.broadcastMessage(String.valueOf(closest.distanceSquared(loc)));
-				return new ResultDeny(DenyReason.OTHER, this, InquiryType.LOCATION, 
-						V.requireFailStruct
-						.replaceAll("\\{STRUCTURE}", entry.getKey().getName()), !V.damageStruct);
+			int range = entry.getValue();
+			long rangeSq = (long) range * range;
+			String type = entry.getKey().getName();
+			for (int rx = (cx - range) >> shift; rx <= (cx + range) >> shift; rx++) {
+				for (int rz = (cz - range) >> shift; rz <= (cz + range) >> shift; rz++) {
+					IndexedRegion region = index.getRegion(rx, rz);
+					if (region == null || !region.isScanned(type)) {
+						queueScan(world, rx, rz, entry.getKey());
+					}
+					if (region == null) {
+						continue;
+					}
+					// Structures found while scanning a neighbour are checked before the region itself is scanned.
+					for (IndexedStructure struct: region.getStructures()) {
+						long dx = (struct.getX() >> 4) - cx, dz = (struct.getZ() >> 4) - cz;
+						if (struct.getType().equals(type) && dx * dx + dz * dz <= rangeSq) {
+							return ResultDeny.of(DenyReason.OTHER, this, InquiryType.LOCATION, 
+									V.requireFailStruct
+									.replaceAll("\\{STRUCTURE}", type), !V.damageStruct);
+						}
+					}
+				}
+			}
+		}
+		return ResultAllow.of(this, InquiryType.LOCATION, V.requirePassDefault);
+	}
+	
+	private StructureIndex getIndex(World world) {
+		StructureIndex index = indexes.get(world.getUID());
+		if (index == null) {
+			indexes.put(world.getUID(), index = new StructureIndex(manager.getTempFly(), world));
+		}
+		return index;
+	}
+	
+	private void queueScan(World world, int regionX, int regionZ, StructureType type) {
+		Scan scan = new Scan(world.getUID(), regionX, regionZ, type);
+		if (queued.add(scan)) {
+			scans.add(scan);
+		}
+	}
+	
+	private void scan() {
+		if (scans.isEmpty()) {
+			return;
+		}
+		long start = System.nanoTime();
+		while (!scans.isEmpty()) {
+			Scan scan = scans.peek();
+			World world = Bukkit.getWorld(scan.world);
+			StructureIndex index = world == null ? null : getIndex(world);
+			IndexedRegion region = index == null ? null : index.getRegion(scan.regionX, scan.regionZ);
+			if (world == null || !structs.containsKey(scan.type) || (region != null && region.isScanned(scan.type.getName()))) {
+				scans.poll();
+				queued.remove(scan);
+				continue;
+			}
+			searchArea(world, index, scan);
+			// The region is only marked as scanned once every area in it has been searched.
+			int perSide = 1 << (REGION_CHUNK_SHIFT - getAreaShift(scan.type));
+			if (++scan.area >= perSide * perSide) {
+				scans.poll();
+				queued.remove(scan);
+				index.markScanned(scan.regionX, scan.regionZ, scan.type.getName());
+			}
+			if (System.nanoTime() - start >= BUDGET) {
+				break;
+			}
+		}
+	}
+	
+	private static int getAreaShift(StructureType type) {
+		return DENSE.contains(type) ? 0 : AREA_SHIFT;
+	}
+	
+	/**
+	 * Search the next area of a region from each of its corner chunks. Only the structures inside the area are indexed,
+	 * the ones outside of it are found when the area they are in is searched.
+	 */
+	private void searchArea(World world, StructureIndex index, Scan scan) {
+		int shift = getAreaShift(scan.type), perSide = 1 << (REGION_CHUNK_SHIFT - shift), size = 1 << shift;
+		int minX = (scan.regionX << REGION_CHUNK_SHIFT) + (scan.area % perSide) * size;
+		int minZ = (scan.regionZ << REGION_CHUNK_SHIFT) + (scan.area / perSide) * size;
+		int maxX = minX + size - 1, maxZ = minZ + size - 1;
+		// A single chunk area only has one corner.
+		int step = Math.max(1, size - 1);
+		for (int x = minX; x <= maxX; x += step) {
+			for (int z = minZ; z <= maxZ; z += step) {
+				Location found;
+				try {
+					found = world.locateNearestStructure(new Location(world, (x << 4) + 8, 64, (z << 4) + 8), scan.type, 0, false);
+				} catch (Exception e) {
+					Console.severe("There was an error while searching for structures: " + scan.type.getName());
+					if (V.debug) {
+						e.printStackTrace();
+					}
+					continue;
+				}
+				if (found == null) {
+					continue;
+				}
+				int foundX = found.getBlockX() >> 4, foundZ = found.getBlockZ() >> 4;
+				if (foundX < minX || foundX > maxX || foundZ < minZ || foundZ > maxZ) {
+					continue;
+				}
+				if (index.addStructure(scan.type.getName(), found)) {
+					Console.debug("--| Indexed structure: " + scan.type.getName() + " at " + found.getBlockX() + ", " + found.getBlockZ());
+					reevaluate(world, found, structs.get(scan.type));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Evaluate the players within range of a newly indexed structure again, their cached result for the chunk is stale.
+	 */
+	private void reevaluate(World world, Location found, int range) {
+		long rangeSq = (long) range * range;
+		for (Player p: world.getPlayers()) {
+			Location loc = p.getLocation();
+			long dx = (loc.getBlockX() >> 4) - (found.getBlockX() >> 4), dz = (loc.getBlockZ() >> 4) - (found.getBlockZ() >> 4);
+			if (dx * dx + dz * dz > rangeSq) {
+				continue;
 			}
+			FlightUser user = manager.getUser(p);
+			if (user != null) {
+				user.getInquiryCache().invalidate(this);
+				user.evaluateFlightRequirement(this, loc);
+			}
+		}
+	}
+	
+	/**
+	 * Save every structure index that has changed.
+	 * @param async Whether the files should be written on another thread.
+	 */
+	public void save(boolean async) {
+		for (StructureIndex index: indexes.values()) {
+			index.save(async);
 		}
-		return new ResultAllow(this, InquiryType.LOCATION, V.requirePassDefault);
+	}
+	
+	/**
+	 * Called when tempfly is disabled, stops scanning and saves the indexes.
+	 */
+	public void shutdown() {
+		scanner.cancel();
+		saver.cancel();
+		scans.clear();
+		queued.clear();
+		save(false);
 	}
 
 	@Override
@@ -57,24 +251,65 @@ public class StructureProximity implements RequirementProvider {
 		return type != InquiryType.LOCATION;
 	}
 	
+	// Structures are searched for by chunk.
+	private static final Set<InquiryKey> LOCATION_KEYS = Collections.unmodifiableSet(EnumSet.of(InquiryKey.CHUNK));
+	
+	@Override
+	public Set<InquiryKey> getLocationKeys() {
+		return LOCATION_KEYS;
+	}
+	
 	@Override
 	public void onTempflyReload() {
+		Map<StructureType, Integer> structs = new HashMap<>();
 		ConfigurationSection csStruct = Files.config.getConfigurationSection("general.structure_proximity");
-		if (csStruct == null) {
-			return;
+		if (csStruct != null) {
+			Map<String, StructureType> registered = StructureType.getStructureTypes();
+			Console.debug(registered);
+			for (String key: csStruct.getKeys(false)) {
+				if (!registered.containsKey(key)) {
+					Console.warn("An invalid structure type is defined in the config! (" + key + ")");
+					continue;
+				}
+				int range = Files.config.getInt("general.structure_proximity." + key, -1);
+				if (range <= 0) {
+					Console.warn("An invalid structure range is defined in the config! (" + key + ")");
+					continue;
+				}
+				structs.put(registered.get(key), range);
+			}
 		}
-		Map<String, StructureType> registered = StructureType.getStructureTypes();
-		Console.debug(registered);
-		for (String key: csStruct.getKeys(false)) {
-			if (!registered.containsKey(key)) {
-				Console.warn("An invalid structure type is defined in the config! (" + key + ")");
-				continue;
+		this.structs = structs;
+	}
+	
+	private static class Scan {
+		
+		private final UUID world;
+		private final int regionX, regionZ;
+		private final StructureType type;
+		// The next area of the region to search, not part of the identity of the scan.
+		private int area;
+		
+		private Scan(UUID world, int regionX, int regionZ, StructureType type) {
+			this.world = world;
+			this.regionX = regionX;
+			this.regionZ = regionZ;
+			this.type = type;
+		}
+		
+		@Override
+		public int hashCode() {
+			return ((world.hashCode() * 31 + regionX) * 31 + regionZ) * 31 + type.hashCode();
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Scan)) {
+				return false;
 			}
-			int range = Files.config.getInt("general.structure_proximity." + key, -1);
-			StructureType struct = registered.get(key);
-			this.structs.put(struct, range);
+			Scan other = (Scan) obj;
+			return world.equals(other.world) && regionX == other.regionX && regionZ == other.regionZ && type.equals(other.type);
 		}
 	}
 
-
 }
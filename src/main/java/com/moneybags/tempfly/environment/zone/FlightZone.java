@@ -0,0 +1,217 @@
+package com.moneybags.tempfly.environment.zone;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.util.Vector;
+
+import com.moneybags.tempfly.hook.region.CompatRegion;
+
+/**
+ * A flight zone defined in the tempfly config, for servers that want to restrict flight by area without a region plugin.
+ * Zones are reported to tempfly as regions with the zone name as the id, so every region setting in the config
+ * also applies to zones. The flight settings can be written on the zone itself as well.
+ */
+public class FlightZone {
+
+	public static enum Shape {
+		CUBOID,
+		SPHERE,
+		CYLINDER;
+	}
+	
+	private final String name, world;
+	private final Shape shape;
+	// The bounding box of the zone, exact for cuboids.
+	private final double minX, minY, minZ, maxX, maxY, maxZ;
+	// The center and radius squared of spheres and cylinders.
+	private final double centerX, centerY, centerZ, radiusSq;
+	private final CompatRegion region;
+	
+	private final boolean disabled, whitelist, infinite;
+	// NaN if the zone does not set them.
+	private final double speed, timeFactor;
+	
+	private FlightZone(String name, String world, Shape shape, Vector min, Vector max, Vector center, double radius, ConfigurationSection settings) {
+		this.name = name;
+		this.world = world;
+		this.shape = shape;
+		this.minX = Math.min(min.getX(), max.getX());
+		this.minY = Math.min(min.getY(), max.getY());
+		this.minZ = Math.min(min.getZ(), max.getZ());
+		this.maxX = Math.max(min.getX(), max.getX());
+		this.maxY = Math.max(min.getY(), max.getY());
+		this.maxZ = Math.max(min.getZ(), max.getZ());
+		this.centerX = center.getX();
+		this.centerY = center.getY();
+		this.centerZ = center.getZ();
+		this.radiusSq = radius * radius;
+		this.region = new CompatRegion(name, new Vector(minX, minY, minZ), new Vector(maxX, maxY, maxZ));
+		
+		this.disabled = settings.getBoolean("disabled", false);
+		this.whitelist = settings.getBoolean("whitelist", false);
+		this.infinite = settings.getBoolean("infinite", false);
+		this.speed = settings.contains("speed") ? settings.getDouble("speed") : Double.NaN;
+		this.timeFactor = settings.contains("relative_time") ? settings.getDouble("relative_time") : Double.NaN;
+	}
+	
+	/**
+	 * Load a zone from its config section.
+	 * @param name The name of the zone
+	 * @param section The config section
+	 * @return The zone
+	 * @throws IllegalArgumentException If the zone is not defined correctly.
+	 */
+	public static FlightZone load(String name, ConfigurationSection section) throws IllegalArgumentException {
+		String world = section.getString("world");
+		if (world == null) {
+			throw new IllegalArgumentException("The zone has no world");
+		}
+		Shape shape;
+		try {
+			shape = Shape.valueOf(section.getString("shape", "cuboid").toUpperCase());
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unknown shape: " + section.getString("shape"));
+		}
+		switch (shape) {
+		case CUBOID:
+		{
+			Vector a = parseVector(section, "min"), b = parseVector(section, "max");
+			// The corners are block coordinates and both corner blocks are inside the zone, so the bounds
+			// run from the lowest corner of the min block to the highest corner of the max block.
+			Vector low = Vector.getMinimum(a, b), high = Vector.getMaximum(a, b);
+			Vector min = new Vector(low.getBlockX(), low.getBlockY(), low.getBlockZ());
+			Vector max = new Vector(high.getBlockX() + 1, high.getBlockY() + 1, high.getBlockZ() + 1);
+			return new FlightZone(name, world, shape, min, max, min, 0, section);
+		}
+		case SPHERE:
+		{
+			Vector center = parseVector(section, "center");
+			double radius = parseRadius(section);
+			Vector offset = new Vector(radius, radius, radius);
+			return new FlightZone(name, world, shape, center.clone().subtract(offset), center.clone().add(offset), center, radius, section);
+		}
+		case CYLINDER:
+		default:
+		{
+			Vector center = parseVector(section, "center");
+			double radius = parseRadius(section);
+			// Unbounded unless set, so flying above or below the build height of the world does not leave the zone.
+			Vector min = new Vector(center.getX() - radius, section.getDouble("min_y", -Double.MAX_VALUE), center.getZ() - radius);
+			Vector max = new Vector(center.getX() + radius, section.getDouble("max_y", Double.MAX_VALUE), center.getZ() + radius);
+			return new FlightZone(name, world, shape, min, max, center, radius, section);
+		}
+		}
+	}
+	
+	private static Vector parseVector(ConfigurationSection section, String key) {
+		String s = section.getString(key);
+		String[] split = s == null ? new String[0] : s.split(",");
+		if (split.length != 3) {
+			throw new IllegalArgumentException("'" + key + "' must be written as x,y,z");
+		}
+		try {
+			return new Vector(Double.parseDouble(split[0].trim()), Double.parseDouble(split[1].trim()), Double.parseDouble(split[2].trim()));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("'" + key + "' must be written as x,y,z");
+		}
+	}
+	
+	private static double parseRadius(ConfigurationSection section) {
+		double radius = section.getDouble("radius", -1);
+		if (radius <= 0) {
+			throw new IllegalArgumentException("The zone needs a radius above 0");
+		}
+		return radius;
+	}
+	
+	/**
+	 * @return True if the point is inside the zone, the world is not checked.
+	 */
+	public boolean contains(double x, double y, double z) {
+		// The max bounds are exclusive, a point on them is in the next block over.
+		if (x < minX || x >= maxX || y < minY || y >= maxY || z < minZ || z >= maxZ) {
+			return false;
+		}
+		double dx = x - centerX, dy = y - centerY, dz = z - centerZ;
+		switch (shape) {
+		case SPHERE:
+			return dx * dx + dy * dy + dz * dz <= radiusSq;
+		case CYLINDER:
+			return dx * dx + dz * dz <= radiusSq;
+		case CUBOID:
+		default:
+			return true;
+		}
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public String getWorld() {
+		return world;
+	}
+	
+	public Shape getShape() {
+		return shape;
+	}
+	
+	/**
+	 * @return The region reported to tempfly for this zone.
+	 */
+	public CompatRegion getRegion() {
+		return region;
+	}
+	
+	public double getMinX() {
+		return minX;
+	}
+	
+	public double getMinY() {
+		return minY;
+	}
+	
+	public double getMinZ() {
+		return minZ;
+	}
+	
+	public double getMaxX() {
+		return maxX;
+	}
+	
+	public double getMaxY() {
+		return maxY;
+	}
+	
+	public double getMaxZ() {
+		return maxZ;
+	}
+	
+	public boolean isDisabled() {
+		return disabled;
+	}
+	
+	public boolean isWhitelist() {
+		return whitelist;
+	}
+	
+	public boolean isInfinite() {
+		return infinite;
+	}
+	
+	public boolean hasSpeed() {
+		return !Double.isNaN(speed);
+	}
+	
+	public double getSpeed() {
+		return speed;
+	}
+	
+	public boolean hasTimeFactor() {
+		return !Double.isNaN(timeFactor);
+	}
+	
+	public double getTimeFactor() {
+		return timeFactor;
+	}
+	
+}
@@ -0,0 +1,63 @@
+package com.moneybags.tempfly.environment.zone;
+
+import org.bukkit.Location;
+
+import com.moneybags.tempfly.TempFly;
+import com.moneybags.tempfly.environment.FlightEnvironment;
+import com.moneybags.tempfly.hook.region.CompatRegion;
+import com.moneybags.tempfly.hook.region.RegionProvider;
+
+/**
+ * Reports the flight zones from the config as regions. If a region plugin is hooked its regions are
+ * reported alongside the zones, otherwise the zones are the only regions tempfly knows about.
+ */
+public class ZoneRegionProvider implements RegionProvider {
+
+	private final TempFly tempfly;
+	private final RegionProvider plugin;
+	
+	/**
+	 * @param tempfly TempFly
+	 * @param plugin The region provider of a region plugin, null if there isn't one.
+	 */
+	public ZoneRegionProvider(TempFly tempfly, RegionProvider plugin) {
+		this.tempfly = tempfly;
+		this.plugin = plugin;
+	}
+	
+	/**
+	 * @return The region provider of the hooked region plugin, null if there isn't one.
+	 */
+	public RegionProvider getPluginProvider() {
+		return plugin;
+	}
+	
+	private FlightEnvironment getEnvironment() {
+		return tempfly.getFlightManager().getFlightEnvironment();
+	}
+	
+	@Override
+	public boolean isEnabled() {
+		return (plugin != null && plugin.isEnabled()) || getEnvironment().hasZones();
+	}
+	
+	@Override
+	public CompatRegion[] getApplicableRegions(Location loc) {
+		CompatRegion[] zones = getEnvironment().getZoneRegions(loc);
+		if (plugin == null || !plugin.isEnabled()) {
+			return zones;
+		}
+		CompatRegion[] regions = plugin.getApplicableRegions(loc);
+		if (zones.length == 0) {
+			return regions;
+		}
+		if (regions.length == 0) {
+			return zones;
+		}
+		CompatRegion[] combined = new CompatRegion[regions.length + zones.length];
+		System.arraycopy(regions, 0, combined, 0, regions.length);
+		System.arraycopy(zones, 0, combined, regions.length, zones.length);
+		return combined;
+	}
+	
+}
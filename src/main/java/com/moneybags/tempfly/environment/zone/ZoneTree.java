@@ -0,0 +1,129 @@
+package com.moneybags.tempfly.environment.zone;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import com.moneybags.tempfly.hook.region.CompatRegion;
+
+/**
+ * An R-tree of the flight zones in a single world. Zones only change when tempfly reloads, so the tree is
+ * packed once with the sort tile recursive method and never modified, finding the zones at a point visits
+ * a logarithmic number of nodes instead of checking every zone.
+ */
+public class ZoneTree {
+
+	// The most children or zones a node can have.
+	private static final int NODE_CAPACITY = 8;
+	private static final CompatRegion[] NONE = new CompatRegion[0];
+	
+	private final Node root;
+	private final int size;
+	
+	public ZoneTree(List<FlightZone> zones) {
+		this.size = zones.size();
+		List<Node> nodes = new ArrayList<>();
+		for (FlightZone zone: zones) {
+			nodes.add(new Node(zone));
+		}
+		while (nodes.size() > 1) {
+			nodes = pack(nodes);
+		}
+		this.root = nodes.isEmpty() ? null : nodes.get(0);
+	}
+	
+	/**
+	 * Group a level of nodes into parents, nodes are sorted into vertical slices by x then filled by z
+	 * so each parent covers a compact area.
+	 */
+	private static List<Node> pack(List<Node> nodes) {
+		int parents = (nodes.size() + NODE_CAPACITY - 1) / NODE_CAPACITY;
+		int slices = (int) Math.ceil(Math.sqrt(parents));
+		int sliceSize = slices * NODE_CAPACITY;
+		nodes.sort(Comparator.comparingDouble(node -> node.minX + node.maxX));
+		List<Node> packed = new ArrayList<>(parents);
+		for (int start = 0; start < nodes.size(); start += sliceSize) {
+			List<Node> slice = new ArrayList<>(nodes.subList(start, Math.min(start + sliceSize, nodes.size())));
+			slice.sort(Comparator.comparingDouble(node -> node.minZ + node.maxZ));
+			for (int i = 0; i < slice.size(); i += NODE_CAPACITY) {
+				packed.add(new Node(slice.subList(i, Math.min(i + NODE_CAPACITY, slice.size()))));
+			}
+		}
+		return packed;
+	}
+	
+	/**
+	 * @return The regions of every zone containing the point. The empty array is shared and must not be modified.
+	 */
+	public CompatRegion[] getRegionsAt(double x, double y, double z) {
+		if (root == null || !root.contains(x, y, z)) {
+			return NONE;
+		}
+		List<CompatRegion> found = new ArrayList<>(2);
+		root.collect(x, y, z, found);
+		return found.isEmpty() ? NONE : found.toArray(new CompatRegion[found.size()]);
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	private static class Node {
+		
+		private final double minX, minY, minZ, maxX, maxY, maxZ;
+		// Leaves hold a zone, every other node holds children.
+		private final FlightZone zone;
+		private final Node[] children;
+		
+		private Node(FlightZone zone) {
+			this.zone = zone;
+			this.children = null;
+			this.minX = zone.getMinX();
+			this.minY = zone.getMinY();
+			this.minZ = zone.getMinZ();
+			this.maxX = zone.getMaxX();
+			this.maxY = zone.getMaxY();
+			this.maxZ = zone.getMaxZ();
+		}
+		
+		private Node(List<Node> children) {
+			this.zone = null;
+			this.children = children.toArray(new Node[children.size()]);
+			double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, minZ = Double.MAX_VALUE;
+			double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE, maxZ = -Double.MAX_VALUE;
+			for (Node child: children) {
+				minX = Math.min(minX, child.minX);
+				minY = Math.min(minY, child.minY);
+				minZ = Math.min(minZ, child.minZ);
+				maxX = Math.max(maxX, child.maxX);
+				maxY = Math.max(maxY, child.maxY);
+				maxZ = Math.max(maxZ, child.maxZ);
+			}
+			this.minX = minX;
+			this.minY = minY;
+			this.minZ = minZ;
+			this.maxX = maxX;
+			this.maxY = maxY;
+			this.maxZ = maxZ;
+		}
+		
+		private boolean contains(double x, double y, double z) {
+			return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
+		}
+		
+		private void collect(double x, double y, double z, List<CompatRegion> found) {
+			if (zone != null) {
+				if (zone.contains(x, y, z)) {
+					found.add(zone.getRegion());
+				}
+				return;
+			}
+			for (Node child: children) {
+				if (child.contains(x, y, z)) {
+					child.collect(x, y, z, found);
+				}
+			}
+		}
+	}
+	
+}
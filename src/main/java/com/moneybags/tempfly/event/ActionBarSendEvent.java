@@ -6,15 +6,14 @@ import org.bukkit.event.Event;
 import org.bukkit.event.HandlerList;
 
 /**
- * This event will not be fired as of tempfly 2.0.3 due to a complication with async threads and the EventApi
- * If you wish to cancel the action bar you can disable it in the tempfly config. Alteratively you can set V.actionBar false 
+ * Fired on the main thread when a queued action bar is about to be sent to a player.
+ * Identical messages that are suppressed because the player can still see them will not fire this event.
  * @author Kevin
  *
  */
-@Deprecated
 public class ActionBarSendEvent extends Event implements Cancellable {
 	
-	private final HandlerList handlers = new HandlerList();
+	private static final HandlerList handlers = new HandlerList();
 	private final Player player;
 	private String message;
 	private boolean cancelled = false;
@@ -29,7 +28,7 @@ public class ActionBarSendEvent extends Event implements Cancellable {
 		return handlers;
 	}
 
-	public HandlerList getHandlerList() {
+	public static HandlerList getHandlerList() {
 		return handlers;
 	}
 
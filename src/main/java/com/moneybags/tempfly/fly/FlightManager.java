@@ -1,12 +1,13 @@
 package com.moneybags.tempfly.fly;
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.bukkit.Bukkit;
 import org.bukkit.GameMode;
@@ -36,11 +37,14 @@ import org.bukkit.event.player.PlayerToggleFlightEvent;
 import com.moneybags.tempfly.TempFly;
 import com.moneybags.tempfly.combat.CombatHandler;
 import com.moneybags.tempfly.environment.FlightEnvironment;
+import com.moneybags.tempfly.environment.StructureProximity;
 import com.moneybags.tempfly.event.FlightUserInitializedEvent;
 import com.moneybags.tempfly.fly.RequirementProvider.InquiryType;
 import com.moneybags.tempfly.fly.result.FlightResult;
+import com.moneybags.tempfly.fly.result.ResultCache;
 import com.moneybags.tempfly.hook.TempFlyHook;
 import com.moneybags.tempfly.hook.region.CompatRegion;
+import com.moneybags.tempfly.hook.region.RegionSet;
 import com.moneybags.tempfly.user.FlightUser;
 import com.moneybags.tempfly.user.UserLoader;
 import com.moneybags.tempfly.util.Console;
@@ -51,26 +55,50 @@ public class FlightManager implements Listener, Reloadable {
 
 	private final TempFly tempfly;
 	private final FlightEnvironment environment;
-	//private StructureProximity structures;
+	private StructureProximity structures;
 	private final CombatHandler combat;
 
 	private final List<RequirementProvider> providers = new LinkedList<>();
+	
+	// Reused by updateLocation so moving does not create a new list every block.
+	private final List<FlightResult> moveResults = new ArrayList<>();
+	private boolean moveResultsInUse;
+	
+	private final MoveQueue moves;
+	private final ParallelInquiries parallel;
+	private final SlicedScheduler sliced;
 
 	public FlightManager(final TempFly tempfly) {
 		this.tempfly = tempfly;
 
 		providers.add(this.environment = new FlightEnvironment(this));
 		providers.add(this.combat = new CombatHandler(this));
-		//try { providers.add(this.structures = new StructureProximity(this)); } catch (Exception e) {
-		//	e.printStackTrace();
-		//}
+		try { providers.add(this.structures = new StructureProximity(this)); } catch (Exception | LinkageError e) {
+			// Servers older than the structure api can't use structure proximity.
+			Console.debug("--| Structure proximity is not supported on this server version.");
+		}
 
 		tempfly.getServer().getPluginManager().registerEvents(this, tempfly);
+		this.parallel = new ParallelInquiries(tempfly, this);
+		this.sliced = new SlicedScheduler(tempfly, this);
+		this.moves = new MoveQueue(tempfly, (p, from, to) -> {
+			FlightUser user = getUser(p);
+			if (user != null) {
+				updateLocation(user, from, to, false, false);
+			}
+		});
 	}// /tf give 1m
 
 	public TempFly getTempFly() {
 		return tempfly;
 	}
+	
+	/**
+	 * @return The queue batching every players moves once per tick, hooks subscribe to it instead of listening for moves.
+	 */
+	public MoveQueue getMoveQueue() {
+		return moves;
+	}
 
 	public FlightEnvironment getFlightEnvironment() {
 		return environment;
@@ -81,10 +109,11 @@ public class FlightManager implements Listener, Reloadable {
 	}
 	
 	/**
+	 * @return The structure proximity requirement, null if the server does not support it.
+	 */
 	public StructureProximity getStructureProximity() {
 		return this.structures;
 	}
-	*/
 
 	@Override
 	public void onTempflyReload() {
@@ -96,9 +125,18 @@ public class FlightManager implements Listener, Reloadable {
 		}
 
 		for (FlightUser user : getUsers()) {
+			// Relative time factors are cached by the user environment, they need recalculated with the new config.
+			user.getEnvironment().asessRtRegions();
+			user.getEnvironment().asessRtWorld();
+			user.getPlaceholderCache().invalidate();
+			user.getInquiryCache().invalidate();
+			user.getPermissions().invalidate();
+		}
+		// Evaluating everyone at once freezes large servers, the evaluations are spread over the next few ticks.
+		sliced.schedule("reload evaluation", getUsers(), user -> {
 			user.evaluateFlightRequirements(user.getPlayer().getLocation(), user.hasFlightEnabled());
 			user.applySpeedCorrect(true, 0);
-		}
+		});
 
 	}
 
@@ -108,7 +146,8 @@ public class FlightManager implements Listener, Reloadable {
 	 * 
 	 */
 
-	private final Map<UUID, FlightUser> users = new HashMap<>();
+	// Concurrent so getUser() can skip the lock for users that are already built, placeholders are requested constantly from any thread.
+	private final Map<UUID, FlightUser> users = new ConcurrentHashMap<>();
 	private final Map<UUID, UserLoader> loaders = new HashMap<>();
 
 	public synchronized boolean hasUser(Player p) {
@@ -116,27 +155,42 @@ public class FlightManager implements Listener, Reloadable {
 				|| ((p != null) && loaders.containsKey(p.getUniqueId()) && loaders.get(p.getUniqueId()).isReady());
 	}
 
-	public synchronized FlightUser getUser(UUID u) {
-		if (!users.containsKey(u) && loaders.containsKey(u) && loaders.get(u).isReady()) {
-			UserLoader loader = loaders.get(u);
-			loaders.remove(u);
-			users.put(u, loader.buildUser());
+	public FlightUser getUser(UUID u) {
+		if (u == null) {
+			return null;
+		}
+		FlightUser user = users.get(u);
+		if (user != null) {
+			return user;
+		}
+		synchronized (this) {
+			if (!users.containsKey(u) && loaders.containsKey(u) && loaders.get(u).isReady()) {
+				UserLoader loader = loaders.get(u);
+				loaders.remove(u);
+				users.put(u, loader.buildUser());
+			}
+			return users.get(u);
 		}
-		return users.containsKey(u) ? users.get(u) : null;
 	}
 
-	public synchronized FlightUser getUser(Player p) {
+	public FlightUser getUser(Player p) {
 		if (p == null) {
 			return null;
 		}
 
 		UUID u = p.getUniqueId();
-		if (!users.containsKey(u) && loaders.containsKey(u) && loaders.get(u).isReady()) {
-			UserLoader loader = loaders.get(u);
-			loaders.remove(u);
-			users.put(u, loader.buildUser(p));
+		FlightUser user = users.get(u);
+		if (user != null) {
+			return user;
+		}
+		synchronized (this) {
+			if (!users.containsKey(u) && loaders.containsKey(u) && loaders.get(u).isReady()) {
+				UserLoader loader = loaders.get(u);
+				loaders.remove(u);
+				users.put(u, loader.buildUser(p));
+			}
+			return users.get(u);
 		}
-		return users.containsKey(u) ? users.get(u) : null;
 	}
 
 	public synchronized FlightUser[] getUsers() {
@@ -219,6 +273,12 @@ public class FlightManager implements Listener, Reloadable {
 	 * Called on plugin disable, saves users and cleans up.
 	 */
 	public void onDisable() {
+		parallel.shutdown();
+		moves.cancel();
+		sliced.cancel();
+		if (structures != null) {
+			structures.shutdown();
+		}
 		for (FlightUser user : getUsers()) {
 			removeUser(user.getPlayer(), true);
 		}
@@ -247,9 +307,13 @@ public class FlightManager implements Listener, Reloadable {
 			throw new IllegalArgumentException("A requirement provider can only be registered once!");
 		}
 		providers.add(provider);
-		for (FlightUser user : getUsers()) {
-			user.evaluateFlightRequirement(provider, user.getPlayer().getLocation());
-		}
+		sliced.schedule("evaluation of " + provider.getClass().getSimpleName(), getUsers(),
+				user -> {
+					// The provider may have been unregistered before the users turn.
+					if (providers.contains(provider)) {
+						user.evaluateFlightRequirement(provider, user.getPlayer().getLocation());
+					}
+				});
 	}
 
 	/**
@@ -261,6 +325,7 @@ public class FlightManager implements Listener, Reloadable {
 	 */
 	public void unregisterRequirementProvider(RequirementProvider provider) {
 		if (providers.remove(provider)) {
+			ResultCache.invalidate(provider);
 			for (FlightUser user : getUsers()) {
 				if (user.removeFlightRequirement(provider)) {
 					user.updateRequirements(V.requirePassDefault);
@@ -279,13 +344,24 @@ public class FlightManager implements Listener, Reloadable {
 	 */
 	public List<FlightResult> inquireFlight(FlightUser user, CompatRegion[] regions) {
 		List<FlightResult> results = new ArrayList<>();
+		inquireFlight(user, regions, results);
+		return results;
+	}
+	
+	/**
+	 * Check if a player can fly in a set of given regions, adding the results to an existing collection.
+	 * 
+	 * @param user
+	 * @param regions
+	 * @param sink The collection to add the results to
+	 */
+	public void inquireFlight(FlightUser user, CompatRegion[] regions, Collection<FlightResult> sink) {
 		for (RequirementProvider requirement : providers) {
 			if (requirement.handles(InquiryType.REGION)) {
 				continue;
 			}
-			results.add(requirement.handleFlightInquiry(user, regions));
+			sink.add(requirement.handleFlightInquiry(user, regions));
 		}
-		return results;
 	}
 
 	/**
@@ -298,13 +374,24 @@ public class FlightManager implements Listener, Reloadable {
 	 */
 	public List<FlightResult> inquireFlight(FlightUser user, CompatRegion region) {
 		List<FlightResult> results = new ArrayList<>();
+		inquireFlight(user, region, results);
+		return results;
+	}
+	
+	/**
+	 * Check if a player can fly in a single region, adding the results to an existing collection.
+	 * 
+	 * @param user
+	 * @param region
+	 * @param sink The collection to add the results to
+	 */
+	public void inquireFlight(FlightUser user, CompatRegion region, Collection<FlightResult> sink) {
 		for (RequirementProvider requirement : providers) {
 			if (requirement.handles(InquiryType.REGION)) {
 				continue;
 			}
-			results.add(requirement.handleFlightInquiry(user, region));
+			sink.add(requirement.handleFlightInquiry(user, region));
 		}
-		return results;
 	}
 
 	/**
@@ -317,13 +404,24 @@ public class FlightManager implements Listener, Reloadable {
 	 */
 	public List<FlightResult> inquireFlight(FlightUser user, World world) {
 		List<FlightResult> results = new ArrayList<>();
+		inquireFlight(user, world, results);
+		return results;
+	}
+	
+	/**
+	 * Check if a player can fly in a world, adding the results to an existing collection.
+	 * 
+	 * @param user
+	 * @param world
+	 * @param sink The collection to add the results to
+	 */
+	public void inquireFlight(FlightUser user, World world, Collection<FlightResult> sink) {
 		for (RequirementProvider requirement : providers) {
 			if (requirement.handles(InquiryType.WORLD)) {
 				continue;
 			}
-			results.add(requirement.handleFlightInquiry(user, world));
+			sink.add(requirement.handleFlightInquiry(user, world));
 		}
-		return results;
 	}
 
 	/**
@@ -338,13 +436,24 @@ public class FlightManager implements Listener, Reloadable {
 	 */
 	public List<FlightResult> inquireFlight(FlightUser user, Location loc) {
 		List<FlightResult> results = new ArrayList<>();
+		inquireFlight(user, loc, results);
+		return results;
+	}
+	
+	/**
+	 * Check if a player can fly at a given location, adding the results to an existing collection.
+	 * 
+	 * @param user
+	 * @param loc
+	 * @param sink The collection to add the results to
+	 */
+	public void inquireFlight(FlightUser user, Location loc, Collection<FlightResult> sink) {
 		for (RequirementProvider requirement : providers) {
 			if (requirement.handles(InquiryType.LOCATION)) {
 				continue;
 			}
-			results.add(requirement.handleFlightInquiry(user, loc));
+			sink.add(requirement.handleFlightInquiry(user, loc));
 		}
-		return results;
 	}
 	
 	public List<FlightResult> inquireFlightBeyondScope(FlightUser user) {
@@ -402,16 +511,35 @@ public class FlightManager implements Listener, Reloadable {
 			}
 		}
 		
-		final List<FlightResult> results = new ArrayList<>();
-
+		if (Bukkit.isPrimaryThread()) {
+			// Anything still scheduled for the user from a reload runs before the move so it can't be undone later.
+			sliced.flush(user);
+		}
+		
+		// Submitting results can cause another location update, only the outer one on the main thread may use the shared list.
+		final boolean reuse = !moveResultsInUse && Bukkit.isPrimaryThread();
+		final List<FlightResult> results = reuse ? moveResults : new ArrayList<>();
+		if (reuse) {
+			moveResultsInUse = true;
+		}
+		try {
+			updateLocation(user, from, to, forceWorld, forceRegion, results);
+		} finally {
+			if (reuse) {
+				moveResults.clear();
+				moveResultsInUse = false;
+			}
+		}
+	}
+	
+	private void updateLocation(FlightUser user, Location from, Location to, boolean forceWorld, boolean forceRegion, List<FlightResult> results) {
 		if (getTempFly().getHookManager().hasRegionProvider()) {
-			List<CompatRegion> regions = Arrays
-					.asList(getTempFly().getHookManager().getRegionProvider().getApplicableRegions(to));
+			RegionSet regions = getTempFly().getHookManager().getRegionCache().getRegionSet(to);
 			if (forceRegion || !user.getEnvironment().checkIdenticalRegions(regions)) {
 				// Process regions
-				results.addAll(inquireFlight(user, regions.toArray(new CompatRegion[regions.size()])));
+				inquireFlight(user, regions.getRegions().clone(), results);
 				// Update the users current regions.
-				user.getEnvironment().updateCurrentRegionSet(regions.toArray(new CompatRegion[regions.size()]));
+				user.getEnvironment().updateCurrentRegionSet(regions);
 				
 				if (user.hasFlightEnabled()) {
 					user.applySpeedCorrect(true, 0);	
@@ -422,15 +550,33 @@ public class FlightManager implements Listener, Reloadable {
 		// Check flight requirements if player entered a new world.
 		// Process world
 		if (!from.getWorld().equals(to.getWorld()) || forceWorld) {
-			results.addAll((inquireFlight(user, to.getWorld())));
+			inquireFlight(user, to.getWorld(), results);
 			user.getEnvironment().asessRtWorld();
 			user.getEnvironment().asessInfiniteFlight();
 		}
 		// Check flight requirements at player location. Doesn't really do anything if
 		// no hooks are enabled.
 		// Used mainly for things like islands in skyblock, faction land, etc...
-		// Process location
-		results.addAll(inquireFlight(user, user.getPlayer().getLocation()));
+		// Process location, providers are only inquired again when something their last result depends on changes.
+		Location loc = user.getPlayer().getLocation();
+		RegionSet current = user.getEnvironment().getCurrentRegions();
+		InquiryCache cache = user.getInquiryCache();
+		for (RequirementProvider requirement : providers) {
+			if (requirement.handles(InquiryType.LOCATION)) {
+				continue;
+			}
+			if (!requirement.isThreadSafe()) {
+				results.add(cache.inquire(requirement, user, loc, current));
+				continue;
+			}
+			// Thread safe providers are inquired on the worker threads and submitted next tick.
+			FlightResult cached = cache.getCached(requirement, loc, current);
+			if (cached != null) {
+				results.add(cached);
+			} else {
+				parallel.submit(user, requirement, loc, current);
+			}
+		}
 
 		// Submit the flight results and see if auto fly can be enabled.
 		user.submitFlightResults(results, user.hasFlightEnabled());
@@ -445,6 +591,7 @@ public class FlightManager implements Listener, Reloadable {
 		if (!hasUser(e.getPlayer())) {
 			return;
 		}
+		moves.flush(e.getPlayer());
 		FlightUser user = getUser(e.getPlayer());
 		if (user == null) {
 			return;
@@ -464,6 +611,7 @@ public class FlightManager implements Listener, Reloadable {
 		if (!hasUser(e.getPlayer())) {
 			return;
 		}
+		moves.discard(e.getPlayer());
 		FlightUser user = getUser(e.getPlayer());
 		if (user == null) {
 			return;
@@ -487,11 +635,14 @@ public class FlightManager implements Listener, Reloadable {
 		if (!hasUser(e.getPlayer())) {
 			return;
 		}
+		moves.discard(e.getPlayer());
 		FlightUser user = getUser(e.getPlayer());
 		if (user == null) {
 			return;
 		}
 		user.resetIdleTimer();
+		// Per world permissions may differ.
+		user.getPermissions().invalidate();
 		// The from coordinate really doesn't matter here, just the world.
 		updateLocation(user, new Location(e.getFrom(), 0, 0, 0), user.getPlayer().getLocation(), true, false);
 		// If the user has flight enabled, we need to correct their speed so it doesnt
@@ -596,6 +747,8 @@ public class FlightManager implements Listener, Reloadable {
 	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = false)
 	public void onQuit(PlayerQuitEvent e) {
 		Player p = e.getPlayer();
+		moves.discard(p);
+		sliced.discard(p.getUniqueId());
 		removeUser(p, false);
 	}
 
@@ -603,11 +756,11 @@ public class FlightManager implements Listener, Reloadable {
 	public void onMove(PlayerMoveEvent e) {
 		if (!e.getFrom().getBlock().equals(e.getTo().getBlock())) {
 			FlightUser user = getUser(e.getPlayer());
-			if (user == null) {
-				return;
+			if (user != null) {
+				user.resetIdleTimer();
 			}
-			user.resetIdleTimer();
-			updateLocation(user, e.getFrom(), e.getTo(), false, false);
+			// Processed once per tick with the players last position, hooks subscribed to the queue need every player.
+			moves.record(e.getPlayer(), e.getFrom(), e.getTo());
 		}
 	}
 
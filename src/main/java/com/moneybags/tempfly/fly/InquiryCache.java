@@ -0,0 +1,148 @@
+package com.moneybags.tempfly.fly;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import com.moneybags.tempfly.fly.RequirementProvider.InquiryKey;
+import com.moneybags.tempfly.fly.result.FlightResult;
+import com.moneybags.tempfly.hook.region.RegionSet;
+import com.moneybags.tempfly.user.FlightUser;
+
+/**
+ * Remembers the last location result of each RequirementProvider for a single user.
+ * A provider is only inquired again when one of the keys it declared in getLocationKeys() has changed,
+ * otherwise its last result is handed back.
+ */
+public class InquiryCache {
+
+	private static final AtomicLong DISPATCHES = new AtomicLong();
+	
+	private final Map<RequirementProvider, Entry> entries = new ConcurrentHashMap<>();
+	
+	/**
+	 * Get the location result of a provider, inquiring it if anything it depends on has changed.
+	 * @param provider The provider
+	 * @param user The user
+	 * @param loc The users location
+	 * @param regions The regions the user is in
+	 * @return The result
+	 */
+	public FlightResult inquire(RequirementProvider provider, FlightUser user, Location loc, RegionSet regions) {
+		FlightResult result = getCached(provider, loc, regions);
+		if (result == null) {
+			result = provider.handleFlightInquiry(user, loc);
+			store(provider, loc, regions, result);
+		}
+		return result;
+	}
+	
+	/**
+	 * @return The last location result of the provider, or null if something it depends on has changed.
+	 */
+	public FlightResult getCached(RequirementProvider provider, Location loc, RegionSet regions) {
+		Entry entry = entries.get(provider);
+		return entry != null && entry.matches(loc, regions) ? entry.result : null;
+	}
+	
+	/**
+	 * Remember the location result of a provider.
+	 */
+	public void store(RequirementProvider provider, Location loc, RegionSet regions, FlightResult result) {
+		Entry entry = entries.get(provider);
+		if (entry == null) {
+			entries.put(provider, entry = new Entry(provider.getLocationKeys()));
+		}
+		entry.update(loc, regions, result);
+	}
+	
+	/**
+	 * Mark that the provider is being inquired off the main thread.
+	 * @return The id of the inquiry, see isLatest()
+	 */
+	public long dispatch(RequirementProvider provider) {
+		Entry entry = entries.get(provider);
+		if (entry == null) {
+			entries.put(provider, entry = new Entry(provider.getLocationKeys()));
+		}
+		return entry.dispatch = DISPATCHES.incrementAndGet();
+	}
+	
+	/**
+	 * @return true if the inquiry is the last one dispatched for the provider and the cache has not been cleared since.
+	 */
+	public boolean isLatest(RequirementProvider provider, long dispatch) {
+		Entry entry = entries.get(provider);
+		return entry != null && entry.dispatch == dispatch;
+	}
+	
+	/**
+	 * Forget the last result of a provider, called when the users requirements from it change.
+	 * An inquiry already dispatched off the main thread is kept, the region and world results of the same move
+	 * change the requirements before its location result comes back.
+	 * @param provider The provider
+	 */
+	public void invalidate(RequirementProvider provider) {
+		Entry entry = entries.get(provider);
+		if (entry != null) {
+			entry.result = null;
+		}
+	}
+	
+	/**
+	 * Forget every result, called when tempfly reloads.
+	 */
+	public void invalidate() {
+		entries.clear();
+	}
+	
+	private static class Entry {
+		
+		private final boolean block, blockY, chunk, regionSet, time;
+		
+		private World world;
+		private int x, y, z;
+		private RegionSet regions;
+		private FlightResult result;
+		private long dispatch;
+		
+		private Entry(Set<InquiryKey> keys) {
+			this.block = keys.contains(InquiryKey.BLOCK);
+			this.blockY = keys.contains(InquiryKey.BLOCK_Y);
+			this.chunk = keys.contains(InquiryKey.CHUNK);
+			this.regionSet = keys.contains(InquiryKey.REGIONS);
+			this.time = keys.contains(InquiryKey.TIME);
+		}
+		
+		private boolean matches(Location loc, RegionSet regions) {
+			if (time || result == null || world != loc.getWorld()) {
+				return false;
+			}
+			int x = loc.getBlockX(), y = loc.getBlockY(), z = loc.getBlockZ();
+			if (block && (x != this.x || y != this.y || z != this.z)) {
+				return false;
+			}
+			if (blockY && y != this.y) {
+				return false;
+			}
+			if (chunk && ((x >> 4) != (this.x >> 4) || (z >> 4) != (this.z >> 4))) {
+				return false;
+			}
+			return !regionSet || (regions == null ? this.regions == null : regions.equals(this.regions));
+		}
+		
+		private void update(Location loc, RegionSet regions, FlightResult result) {
+			this.world = loc.getWorld();
+			this.x = loc.getBlockX();
+			this.y = loc.getBlockY();
+			this.z = loc.getBlockZ();
+			this.regions = regions;
+			this.result = result;
+		}
+	}
+	
+}
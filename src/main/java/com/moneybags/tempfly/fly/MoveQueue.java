@@ -0,0 +1,147 @@
+package com.moneybags.tempfly.fly;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Collects player moves and hands them off once per tick.
+ * Fast flyers and elytras can cross several blocks every tick, each with its own move event.
+ * Only the first from location and the last to location of each player are kept, so the move
+ * is processed once per tick no matter how many events there were.
+ * 
+ * Teleports, respawns and world changes should flush the players pending move and be handled right away.
+ * 
+ * The FlightManager owns the only queue, hooks that track players as they move subscribe to it
+ * so each move is batched once for everything that needs it.
+ */
+public class MoveQueue implements Runnable {
+
+	@FunctionalInterface
+	public static interface MoveHandler {
+		public void onMove(Player p, Location from, Location to);
+	}
+	
+	private final List<MoveHandler> handlers = new CopyOnWriteArrayList<>();
+	private final BukkitTask task;
+	
+	private Map<UUID, Move> pending = new LinkedHashMap<>();
+	private Map<UUID, Move> processing = new LinkedHashMap<>();
+	
+	public MoveQueue(Plugin plugin, MoveHandler handler) {
+		handlers.add(handler);
+		this.task = Bukkit.getScheduler().runTaskTimer(plugin, this, 1, 1);
+	}
+	
+	/**
+	 * Have a handler receive the batched moves as well, does nothing if it is already subscribed.
+	 * @param handler The handler
+	 */
+	public void subscribe(MoveHandler handler) {
+		if (!handlers.contains(handler)) {
+			handlers.add(handler);
+		}
+	}
+	
+	/**
+	 * Stop a handler from receiving moves.
+	 * @param handler The handler
+	 */
+	public void unsubscribe(MoveHandler handler) {
+		handlers.remove(handler);
+	}
+	
+	/**
+	 * Record a move, if the player already moved this tick only the destination is updated.
+	 * @param p The player
+	 * @param from Where the player moved from
+	 * @param to Where the player moved to
+	 */
+	public void record(Player p, Location from, Location to) {
+		Move move = pending.get(p.getUniqueId());
+		if (move == null) {
+			pending.put(p.getUniqueId(), new Move(p, from, to));
+		} else {
+			move.to = to;
+		}
+	}
+	
+	/**
+	 * Process the pending move of a player right away.
+	 * @param p The player
+	 */
+	public void flush(Player p) {
+		Move move = pending.remove(p.getUniqueId());
+		if (move != null) {
+			handle(move);
+		}
+	}
+	
+	/**
+	 * Forget the pending move of a player without processing it.
+	 * @param p The player
+	 */
+	public void discard(Player p) {
+		pending.remove(p.getUniqueId());
+	}
+	
+	public void cancel() {
+		task.cancel();
+		pending.clear();
+	}
+	
+	@Override
+	public void run() {
+		if (pending.isEmpty()) {
+			return;
+		}
+		// Moves recorded while processing go into the next tick.
+		Map<UUID, Move> batch = pending;
+		pending = processing;
+		processing = batch;
+		try {
+			for (Move move : batch.values()) {
+				handle(move);
+			}
+		} finally {
+			batch.clear();
+		}
+	}
+	
+	private void handle(Move move) {
+		Location from = move.from, to = move.to;
+		if (!move.player.isOnline()) {
+			return;
+		}
+		// The player may have ended up back in the block they started from.
+		if (from.getWorld() == to.getWorld() && from.getBlockX() == to.getBlockX()
+				&& from.getBlockY() == to.getBlockY() && from.getBlockZ() == to.getBlockZ()) {
+			return;
+		}
+		for (MoveHandler handler : handlers) {
+			handler.onMove(move.player, from, to);
+		}
+	}
+	
+	private static class Move {
+		
+		private final Player player;
+		private final Location from;
+		private Location to;
+		
+		private Move(Player player, Location from, Location to) {
+			this.player = player;
+			this.from = from;
+			this.to = to;
+		}
+	}
+	
+}
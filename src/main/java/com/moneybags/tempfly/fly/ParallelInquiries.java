@@ -0,0 +1,126 @@
+package com.moneybags.tempfly.fly;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.scheduler.BukkitTask;
+
+import com.moneybags.tempfly.TempFly;
+import com.moneybags.tempfly.fly.RequirementProvider.InquiryType;
+import com.moneybags.tempfly.fly.result.FlightResult;
+import com.moneybags.tempfly.hook.region.RegionSet;
+import com.moneybags.tempfly.user.FlightUser;
+import com.moneybags.tempfly.util.Console;
+import com.moneybags.tempfly.util.V;
+
+/**
+ * Runs location inquiries for thread safe providers on a pool of worker threads, see RequirementProvider.isThreadSafe().
+ * Each inquiry gets its own snapshot of the players location and region set. The results are collected and submitted
+ * to the users on the main thread the next tick, results that have been superseded by a newer inquiry are dropped.
+ */
+public class ParallelInquiries implements Runnable {
+
+	private final FlightManager manager;
+	private final ExecutorService workers;
+	private final BukkitTask task;
+	private final Queue<Completed> completed = new ConcurrentLinkedQueue<>();
+	
+	public ParallelInquiries(TempFly tempfly, FlightManager manager) {
+		this.manager = manager;
+		AtomicInteger count = new AtomicInteger();
+		this.workers = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), runnable -> {
+			Thread thread = new Thread(runnable, "TempFly Inquiry Worker " + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.task = Bukkit.getScheduler().runTaskTimer(tempfly, this, 1, 1);
+	}
+	
+	/**
+	 * Inquire a thread safe provider off the main thread.
+	 * @param user The user
+	 * @param provider The provider
+	 * @param loc The users location, a copy is taken.
+	 * @param regions The users regions
+	 */
+	public void submit(FlightUser user, RequirementProvider provider, Location loc, RegionSet regions) {
+		Location snapshot = loc.clone();
+		boolean required = user.hasFlightRequirement(provider, InquiryType.LOCATION);
+		long dispatch = user.getInquiryCache().dispatch(provider);
+		try {
+			workers.execute(() -> {
+				try {
+					completed.add(new Completed(user, provider, snapshot, regions, dispatch, provider.handleFlightInquiry(user, snapshot, required)));
+				} catch (Exception e) {
+					Console.severe("A requirement provider failed to process a flight inquiry off the main thread: " + provider.getClass().getName());
+					if (V.debug) {
+						e.printStackTrace();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// Shutting down
+		}
+	}
+	
+	/**
+	 * Apply the finished inquiries on the main thread.
+	 */
+	@Override
+	public void run() {
+		if (completed.isEmpty()) {
+			return;
+		}
+		Map<FlightUser, List<FlightResult>> results = new HashMap<>();
+		Completed inquiry;
+		while ((inquiry = completed.poll()) != null) {
+			FlightUser user = inquiry.user;
+			if (!user.getPlayer().isOnline() || manager.getUser(user.getPlayer()) != user
+					|| !user.getInquiryCache().isLatest(inquiry.provider, inquiry.dispatch)) {
+				continue;
+			}
+			user.getInquiryCache().store(inquiry.provider, inquiry.location, inquiry.regions, inquiry.result);
+			results.computeIfAbsent(user, u -> new ArrayList<>()).add(inquiry.result);
+		}
+		for (Map.Entry<FlightUser, List<FlightResult>> entry : results.entrySet()) {
+			FlightUser user = entry.getKey();
+			user.submitFlightResults(entry.getValue(), user.hasFlightEnabled());
+		}
+	}
+	
+	public void shutdown() {
+		task.cancel();
+		workers.shutdownNow();
+		completed.clear();
+	}
+	
+	private static class Completed {
+		
+		private final FlightUser user;
+		private final RequirementProvider provider;
+		private final Location location;
+		private final RegionSet regions;
+		private final long dispatch;
+		private final FlightResult result;
+		
+		private Completed(FlightUser user, RequirementProvider provider, Location location, RegionSet regions, long dispatch, FlightResult result) {
+			this.user = user;
+			this.provider = provider;
+			this.location = location;
+			this.regions = regions;
+			this.dispatch = dispatch;
+			this.result = result;
+		}
+	}
+	
+}
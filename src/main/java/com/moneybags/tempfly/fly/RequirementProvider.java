@@ -1,5 +1,9 @@
 package com.moneybags.tempfly.fly;
 
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
 import org.bukkit.Location;
 import org.bukkit.World;
 
@@ -12,6 +16,11 @@ import com.moneybags.tempfly.util.data.Reloadable;
 
 public interface RequirementProvider extends Reloadable {
 	
+	/**
+	 * The default location keys, the provider is inquired every time the player moves to a new block.
+	 */
+	public static final Set<InquiryKey> EVERY_BLOCK = Collections.unmodifiableSet(EnumSet.of(InquiryKey.BLOCK));
+	
 	/**
 	 * Inquire whether a player can fly within a set of given regions.
 	 * @param p
@@ -19,7 +28,7 @@ public interface RequirementProvider extends Reloadable {
 	 * @return
 	 */
 	public default FlightResult handleFlightInquiry(FlightUser user, CompatRegion[] regions) {
-		return new ResultAllow(this, InquiryType.REGION, V.requirePassDefault);
+		return ResultAllow.of(this, InquiryType.REGION, V.requirePassDefault);
 	}
 	
 	/**
@@ -29,7 +38,7 @@ public interface RequirementProvider extends Reloadable {
 	 * @return
 	 */
 	public default FlightResult handleFlightInquiry(FlightUser user, CompatRegion r) {
-		return new ResultAllow(this, InquiryType.REGION, V.requirePassDefault);
+		return ResultAllow.of(this, InquiryType.REGION, V.requirePassDefault);
 	}
 
 	/**
@@ -39,7 +48,7 @@ public interface RequirementProvider extends Reloadable {
 	 * @return
 	 */
 	public default FlightResult handleFlightInquiry(FlightUser user, World world) {
-		return new ResultAllow(this, InquiryType.WORLD, V.requirePassDefault);
+		return ResultAllow.of(this, InquiryType.WORLD, V.requirePassDefault);
 	}
 	
 	/**
@@ -49,11 +58,23 @@ public interface RequirementProvider extends Reloadable {
 	 * @return
 	 */
 	public default FlightResult handleFlightInquiry(FlightUser user, Location loc) {
-		return new ResultAllow(this, InquiryType.LOCATION, V.requirePassDefault);
+		return ResultAllow.of(this, InquiryType.LOCATION, V.requirePassDefault);
+	}
+	
+	/**
+	 * Inquire whether a player can fly at a given location off the main thread, see isThreadSafe().
+	 * @param user
+	 * @param loc A copy of the players location.
+	 * @param required Whether the user had a location requirement from this provider when the inquiry was submitted,
+	 * read on the main thread so the provider does not have to touch the user.
+	 * @return
+	 */
+	public default FlightResult handleFlightInquiry(FlightUser user, Location loc, boolean required) {
+		return handleFlightInquiry(user, loc);
 	}
 	
 	public default FlightResult handleFlightInquiry(FlightUser user) {
-		return new ResultAllow(this, InquiryType.UNDEFINED, V.requirePassDefault);
+		return ResultAllow.of(this, InquiryType.UNDEFINED, V.requirePassDefault);
 	}
 
 	/**
@@ -79,6 +100,29 @@ public interface RequirementProvider extends Reloadable {
 	public default boolean handles(InquiryType type) {
 		return true;
 	}
+	
+	/**
+	 * What the providers answer to a location inquiry depends on. Tempfly remembers the last location result
+	 * of the provider for each user and only inquires again when one of these keys changes or the player changes worlds.
+	 * Return an empty set if the answer only depends on the world.
+	 * 
+	 * This is read once per user, the set should not change while tempfly is running.
+	 * @return The keys the location result depends on.
+	 */
+	public default Set<InquiryKey> getLocationKeys() {
+		return EVERY_BLOCK;
+	}
+	
+	/**
+	 * Can location inquiries for this provider be processed off the main thread.
+	 * If true handleFlightInquiry(FlightUser, Location, boolean) is called from a worker thread with a copy of the players location
+	 * and its result is submitted to the user on the main thread a tick later. The provider must not touch the world,
+	 * the user or anything else that is not thread safe while answering.
+	 * @return true if location inquiries are thread safe.
+	 */
+	public default boolean isThreadSafe() {
+		return false;
+	}
 
 	/**
 	 * 
@@ -105,5 +149,33 @@ public interface RequirementProvider extends Reloadable {
 		OUT_OF_SCOPE,
 		UNDEFINED;
 	}
+	
+	/**
+	 * 
+	 * Defines the inputs a location inquiry can depend on, see getLocationKeys().
+	 *
+	 */
+	public static enum InquiryKey {
+		/**
+		 * The block the player is in.
+		 */
+		BLOCK,
+		/**
+		 * The height of the block the player is in.
+		 */
+		BLOCK_Y,
+		/**
+		 * The chunk the player is in.
+		 */
+		CHUNK,
+		/**
+		 * The set of regions the player is in.
+		 */
+		REGIONS,
+		/**
+		 * The answer can change without the player moving, the provider is inquired every time.
+		 */
+		TIME;
+	}
 
 }
@@ -0,0 +1,165 @@
+package com.moneybags.tempfly.fly;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import com.moneybags.tempfly.TempFly;
+import com.moneybags.tempfly.user.FlightUser;
+import com.moneybags.tempfly.util.Console;
+import com.moneybags.tempfly.util.V;
+
+/**
+ * Spreads a job that has to run for every online user, such as re-evaluating everyone after a reload,
+ * across as many ticks as it takes to stay under the per tick budget from the config.
+ * 
+ * Jobs for the same user always run in the order they were scheduled. If a user moves or teleports before
+ * their turn the FlightManager flushes them first, so the move is processed against the new state rather than
+ * being overwritten when the job eventually runs.
+ */
+public class SlicedScheduler implements Runnable {
+
+	private final TempFly tempfly;
+	private final FlightManager manager;
+	private final Deque<Batch> batches = new ArrayDeque<>();
+	private BukkitTask task;
+	
+	public SlicedScheduler(TempFly tempfly, FlightManager manager) {
+		this.tempfly = tempfly;
+		this.manager = manager;
+	}
+	
+	/**
+	 * Schedule a job to run once for each of the given users.
+	 * @param name The name of the job, used when reporting progress.
+	 * @param users The users to run the job for.
+	 * @param job The job
+	 */
+	public void schedule(String name, FlightUser[] users, Consumer<FlightUser> job) {
+		if (users.length == 0) {
+			return;
+		}
+		Set<UUID> remaining = new LinkedHashSet<>();
+		for (FlightUser user: users) {
+			remaining.add(user.getPlayer().getUniqueId());
+		}
+		batches.add(new Batch(name, remaining, job));
+		Console.debug("--| Scheduled " + name + " for " + remaining.size() + " users.");
+		if (task == null) {
+			task = Bukkit.getScheduler().runTaskTimer(tempfly, this, 1, 1);
+		}
+	}
+	
+	/**
+	 * Run every job still waiting for a user right away, in the order they were scheduled.
+	 * @param user The user
+	 */
+	public void flush(FlightUser user) {
+		if (batches.isEmpty()) {
+			return;
+		}
+		UUID u = user.getPlayer().getUniqueId();
+		// Copied as a job may schedule another batch.
+		for (Batch batch: batches.toArray(new Batch[batches.size()])) {
+			if (batch.remaining.remove(u)) {
+				batch.run(user);
+			}
+		}
+	}
+	
+	/**
+	 * Forget every job waiting for a user without running them, called when they quit.
+	 * @param u The user
+	 */
+	public void discard(UUID u) {
+		for (Batch batch: batches) {
+			batch.remaining.remove(u);
+		}
+	}
+	
+	/**
+	 * @return The amount of jobs still waiting to run.
+	 */
+	public int getPending() {
+		int pending = 0;
+		for (Batch batch: batches) {
+			pending += batch.remaining.size();
+		}
+		return pending;
+	}
+	
+	public void cancel() {
+		if (task != null) {
+			task.cancel();
+			task = null;
+		}
+		batches.clear();
+	}
+	
+	@Override
+	public void run() {
+		long start = System.nanoTime(), budget = Math.max(1, V.reevaluateBudget) * 1000000L;
+		while (!batches.isEmpty()) {
+			Batch batch = batches.peek();
+			Iterator<UUID> it = batch.remaining.iterator();
+			if (!it.hasNext()) {
+				batches.poll();
+				Console.debug("--| Finished " + batch.name + " for " + batch.done + " users in " + batch.ticks + " ticks.");
+				continue;
+			}
+			UUID u = it.next();
+			it.remove();
+			FlightUser user = manager.getUser(Bukkit.getPlayer(u));
+			if (user != null) {
+				batch.run(user);
+			}
+			if (System.nanoTime() - start >= budget) {
+				break;
+			}
+		}
+		for (Batch batch: batches) {
+			batch.ticks++;
+		}
+		if (batches.isEmpty()) {
+			task.cancel();
+			task = null;
+		} else if (V.debug) {
+			Batch batch = batches.peek();
+			Console.debug("--| " + batch.name + ": " + batch.done + "/" + (batch.done + batch.remaining.size()) + " users");
+		}
+	}
+	
+	private static class Batch {
+		
+		private final String name;
+		private final Set<UUID> remaining;
+		private final Consumer<FlightUser> job;
+		private int done, ticks;
+		
+		private Batch(String name, Set<UUID> remaining, Consumer<FlightUser> job) {
+			this.name = name;
+			this.remaining = remaining;
+			this.job = job;
+		}
+		
+		private void run(FlightUser user) {
+			done++;
+			try {
+				job.accept(user);
+			} catch (Exception e) {
+				Console.severe("There was an error while running " + name + " for user: " + user.getPlayer().getName());
+				if (V.debug) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+	
+}
@@ -4,22 +4,34 @@ import com.moneybags.tempfly.fly.RequirementProvider;
 import com.moneybags.tempfly.fly.RequirementProvider.InquiryType;
 import com.moneybags.tempfly.util.V;
 
+/**
+ * The answer of a requirement provider to a flight inquiry. The shared results from ResultAllow.of() and ResultDeny.of()
+ * never change so they can be handed out to every inquiry and between threads.
+ */
 public abstract class FlightResult {
 	
-	private boolean allowed;
-	private DenyReason reason;
+	private final boolean allowed;
+	private final DenyReason reason;
+	// Only changed on unshared results through the deprecated setInquiryType().
 	private InquiryType type;
-	private String message;
-	private RequirementProvider requirement;
-	private boolean fallSafely;
+	private final String message;
+	private final RequirementProvider requirement;
+	private final boolean fallSafely;
+	// Shared results are handed out to every inquiry by ResultCache.
+	private final boolean shared;
 
 	public FlightResult(boolean allowed, DenyReason reason, InquiryType type, String message, RequirementProvider requirement, boolean fallSafely) {
+		this(allowed, reason, type, message, requirement, fallSafely, false);
+	}
+	
+	FlightResult(boolean allowed, DenyReason reason, InquiryType type, String message, RequirementProvider requirement, boolean fallSafely, boolean shared) {
 		this.allowed = allowed;
 		this.reason = reason;
 		this.type = type;
 		this.message = message;
 		this.requirement = requirement;
 		this.fallSafely = fallSafely;
+		this.shared = shared;
 	}
 	
 	public boolean isAllowed() {
@@ -34,15 +46,54 @@ public abstract class FlightResult {
 		return type;
 	}
 	
+	/**
+	 * Change the inquiry type of this result. Shared results can't be changed, the shared result for the new
+	 * inquiry type is returned instead so the returned result must always be used.
+	 * @param type The inquiry type
+	 * @return This result, or the shared result with the given inquiry type if this one is shared.
+	 * @deprecated Use withInquiryType(), it never changes the result it is called on.
+	 */
+	@Deprecated
 	public FlightResult setInquiryType(InquiryType type) {
+		if (shared) {
+			return withInquiryType(type);
+		}
 		this.type = type;
 		return this;
 	}
 	
+	/**
+	 * Shared results return the shared result for the new inquiry type, other results are copied.
+	 * @param type The inquiry type
+	 * @return A result with the given inquiry type, this result is left as it is.
+	 */
+	public FlightResult withInquiryType(InquiryType type) {
+		if (type == this.type) {
+			return this;
+		}
+		if (shared) {
+			return allowed ? ResultAllow.of(requirement, type, message)
+					: ResultDeny.of(reason, requirement, type, message, fallSafely);
+		}
+		return allowed ? new ResultAllow(requirement, type, message)
+				: new ResultDeny(reason, requirement, type, message, fallSafely);
+	}
+	
 	public String getMessage() {
 		return message == null ? (allowed ? V.requirePassDefault : V.requireFailDefault) : message;
 	}
 	
+	String getRawMessage() {
+		return message;
+	}
+	
+	/**
+	 * @return true if this result is shared between inquiries, see ResultAllow.of() and ResultDeny.of().
+	 */
+	public boolean isShared() {
+		return shared;
+	}
+	
 	public RequirementProvider getRequirement() {
 		return requirement;
 	}
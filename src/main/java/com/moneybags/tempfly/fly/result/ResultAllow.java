@@ -11,7 +11,19 @@ import com.moneybags.tempfly.fly.RequirementProvider.InquiryType;
 public class ResultAllow extends FlightResult {
 
 	public ResultAllow(RequirementProvider requirement, InquiryType type, String allowMessage) {
-		super(true, null, type, allowMessage, requirement, true);
+		this(requirement, type, allowMessage, false);
+	}
+	
+	ResultAllow(RequirementProvider requirement, InquiryType type, String allowMessage, boolean shared) {
+		super(true, null, type, allowMessage, requirement, true, shared);
+	}
+	
+	/**
+	 * Get the shared result for an allowed inquiry. Prefer this over the constructor for results
+	 * that are handed out on every inquiry, such as when a player moves.
+	 */
+	public static ResultAllow of(RequirementProvider requirement, InquiryType type, String allowMessage) {
+		return ResultCache.allow(requirement, type, allowMessage);
 	}
 
 }
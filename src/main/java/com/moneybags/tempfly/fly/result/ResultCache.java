@@ -0,0 +1,74 @@
+package com.moneybags.tempfly.fly.result;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.moneybags.tempfly.fly.RequirementProvider;
+import com.moneybags.tempfly.fly.RequirementProvider.InquiryType;
+import com.moneybags.tempfly.fly.result.FlightResult.DenyReason;
+
+/**
+ * Holds the shared flight results handed out by ResultAllow.of() and ResultDeny.of().
+ * Providers answer the same inquiry with the same result on almost every block a player moves,
+ * so each provider keeps one result per outcome which is reused until the message changes.
+ * Results are immutable and may be requested from any thread.
+ */
+public final class ResultCache {
+
+	private static final InquiryType[] TYPES = InquiryType.values();
+	private static final DenyReason[] REASONS = DenyReason.values();
+	
+	// The last slot of each is used for results with no inquiry type or deny reason.
+	private static final int
+	TYPE_SLOTS = TYPES.length + 1,
+	ALLOW_SLOTS = TYPE_SLOTS,
+	DENY_SLOTS = TYPE_SLOTS * (REASONS.length + 1) * 2;
+	
+	private static final Map<RequirementProvider, AtomicReferenceArray<FlightResult>>
+	ALLOWED = new ConcurrentHashMap<>(),
+	DENIED = new ConcurrentHashMap<>();
+	
+	private ResultCache() {}
+	
+	static ResultAllow allow(RequirementProvider provider, InquiryType type, String message) {
+		AtomicReferenceArray<FlightResult> slots = ALLOWED.computeIfAbsent(provider, p -> new AtomicReferenceArray<>(ALLOW_SLOTS));
+		int slot = slot(type);
+		FlightResult result = slots.get(slot);
+		if (result == null || !sameMessage(result, message)) {
+			result = new ResultAllow(provider, type, message, true);
+			slots.set(slot, result);
+		}
+		return (ResultAllow) result;
+	}
+	
+	static ResultDeny deny(DenyReason reason, RequirementProvider provider, InquiryType type, String message, boolean fallSafely) {
+		AtomicReferenceArray<FlightResult> slots = DENIED.computeIfAbsent(provider, p -> new AtomicReferenceArray<>(DENY_SLOTS));
+		int slot = ((reason == null ? REASONS.length : reason.ordinal()) * TYPE_SLOTS + slot(type)) * 2 + (fallSafely ? 1 : 0);
+		FlightResult result = slots.get(slot);
+		if (result == null || !sameMessage(result, message)) {
+			result = new ResultDeny(reason, provider, type, message, fallSafely, true);
+			slots.set(slot, result);
+		}
+		return (ResultDeny) result;
+	}
+	
+	/**
+	 * Forget the shared results of a provider, called when it is unregistered.
+	 * @param provider The provider
+	 */
+	public static void invalidate(RequirementProvider provider) {
+		ALLOWED.remove(provider);
+		DENIED.remove(provider);
+	}
+	
+	private static int slot(InquiryType type) {
+		return type == null ? TYPES.length : type.ordinal();
+	}
+	
+	private static boolean sameMessage(FlightResult result, String message) {
+		String cached = result.getRawMessage();
+		return cached == message || (cached != null && cached.equals(message));
+	}
+	
+}
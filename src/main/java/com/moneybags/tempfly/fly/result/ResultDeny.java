@@ -11,7 +11,19 @@ import com.moneybags.tempfly.fly.RequirementProvider.InquiryType;
 public class ResultDeny extends FlightResult {
 
 	public ResultDeny(DenyReason reason, RequirementProvider requirement, InquiryType type, String denyMessage, boolean fallSafely) {
-		super(false, reason, type, denyMessage, requirement, fallSafely);
+		this(reason, requirement, type, denyMessage, fallSafely, false);
+	}
+	
+	ResultDeny(DenyReason reason, RequirementProvider requirement, InquiryType type, String denyMessage, boolean fallSafely, boolean shared) {
+		super(false, reason, type, denyMessage, requirement, fallSafely, shared);
+	}
+	
+	/**
+	 * Get the shared result for a denied inquiry. Prefer this over the constructor for results
+	 * that are handed out on every inquiry, such as when a player moves.
+	 */
+	public static ResultDeny of(DenyReason reason, RequirementProvider requirement, InquiryType type, String denyMessage, boolean fallSafely) {
+		return ResultCache.deny(reason, requirement, type, denyMessage, fallSafely);
 	}
 
 }
@@ -0,0 +1,89 @@
+package com.moneybags.tempfly.hook;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Collects players whose flight requirements need to be checked again after a faction or island event
+ * and works through them a little each tick. A relation change on a large faction or a level change on a busy
+ * island affects every member at once, queueing them spreads the work out instead of doing it all inside the event.
+ * A player queued more than once is only evaluated once.
+ */
+public class EvaluationQueue implements Runnable {
+
+	// How long in nanoseconds the queue may spend evaluating players each tick, at least one player is always evaluated.
+	private static final long BUDGET = 2000000;
+	
+	@FunctionalInterface
+	public static interface EvaluationHandler {
+		/**
+		 * @param p The player
+		 * @param full True if the world and region requirements should be evaluated as well as the location.
+		 */
+		public void evaluate(Player p, boolean full);
+	}
+	
+	private final EvaluationHandler handler;
+	private final BukkitTask task;
+	
+	private final Map<UUID, Boolean> pending = new LinkedHashMap<>();
+	
+	public EvaluationQueue(Plugin plugin, EvaluationHandler handler) {
+		this.handler = handler;
+		this.task = Bukkit.getScheduler().runTaskTimer(plugin, this, 1, 1);
+	}
+	
+	/**
+	 * Queue a player to be evaluated, does nothing if the player is offline.
+	 * @param playerId The player
+	 * @param full True if the world and region requirements should be evaluated as well as the location.
+	 */
+	public void queue(UUID playerId, boolean full) {
+		if (Bukkit.getPlayer(playerId) == null) {
+			return;
+		}
+		pending.merge(playerId, full, Boolean::logicalOr);
+	}
+	
+	/**
+	 * Forget a queued player without evaluating them.
+	 * @param playerId The player
+	 */
+	public void discard(UUID playerId) {
+		pending.remove(playerId);
+	}
+	
+	public void cancel() {
+		task.cancel();
+		pending.clear();
+	}
+	
+	@Override
+	public void run() {
+		if (pending.isEmpty()) {
+			return;
+		}
+		long start = System.nanoTime();
+		while (!pending.isEmpty()) {
+			// Evaluating a player may queue others, so the iterator is not held across evaluations.
+			Iterator<Map.Entry<UUID, Boolean>> it = pending.entrySet().iterator();
+			Map.Entry<UUID, Boolean> entry = it.next();
+			it.remove();
+			Player p = Bukkit.getPlayer(entry.getKey());
+			if (p != null) {
+				handler.evaluate(p, entry.getValue());
+			}
+			if (System.nanoTime() - start >= BUDGET) {
+				break;
+			}
+		}
+	}
+	
+}
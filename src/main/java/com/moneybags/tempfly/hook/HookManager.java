@@ -10,7 +10,9 @@ import java.util.Map.Entry;
 import org.bukkit.plugin.RegisteredServiceProvider;
 
 import com.moneybags.tempfly.TempFly;
+import com.moneybags.tempfly.environment.zone.ZoneRegionProvider;
 import com.moneybags.tempfly.hook.factions.plugins.FactionsUUIDHook;
+import com.moneybags.tempfly.hook.region.RegionCache;
 import com.moneybags.tempfly.hook.region.RegionProvider;
 import com.moneybags.tempfly.hook.region.plugins.WorldGuardHook;
 import com.moneybags.tempfly.hook.skyblock.plugins.SuperiorHook;
@@ -29,6 +31,7 @@ public class HookManager implements Reloadable {
 	private Economy eco = null;
 	private Permission perms = null;
 	private RegionProvider regions;
+	private RegionCache regionCache;
 	
 	private Map<Genre, List<TempFlyHook>> hooks = new HashMap<>();
 	
@@ -75,16 +78,18 @@ public class HookManager implements Reloadable {
 	 */
 	
 	private void loadRegionProvider() {
-		RegionProvider hook;
+		RegionProvider hook, found = null;
 		for (Class<?> clazz: REGIONS) {
 			try {
 				hook = (RegionProvider) clazz.getConstructor(TempFly.class).newInstance(plugin);
 				if (hook.isEnabled()) {
-					regions = hook;
+					found = hook;
 					break;
 				}
 			} catch (Exception e) {e.printStackTrace();}
 		}
+		// The flight zones from the config are reported alongside the region plugin, or on their own without one.
+		setRegionProvider(new ZoneRegionProvider(plugin, found));
 	}
 	
 	/**
@@ -93,14 +98,23 @@ public class HookManager implements Reloadable {
 	 */
 	public void setRegionProvider(RegionProvider provider) {
 		this.regions = provider;
+		this.regionCache = provider == null ? null : new RegionCache(provider);
 	}
 	
     public boolean hasRegionProvider() {
     	return !V.disableTracker && regions != null && regions.isEnabled();
     }
     
+    /**
+     * @return The active region provider, wrapped in the region cache so repeated lookups at the same block
+     * are answered from memory.
+     */
     public RegionProvider getRegionProvider() {
-    	return regions;
+    	return regionCache;
+    }
+    
+    public RegionCache getRegionCache() {
+    	return regionCache;
     }
     
     public boolean hasPermissions() {
@@ -237,6 +251,10 @@ public class HookManager implements Reloadable {
 
 	@Override
 	public void onTempflyReload() {
+		if (regionCache != null) {
+			Console.debug("Region cache hit rate: " + regionCache.getHitRate() + " (" + regionCache.getHits() + " hits, " + regionCache.getMisses() + " misses)");
+			regionCache.invalidate();
+		}
 		for (Entry<Genre, List<TempFlyHook>> entry: hooks.entrySet()) {
 			for (TempFlyHook hook: entry.getValue()) {
 				Console.debug("Preparing to reload hook: " + hook.getHookName());
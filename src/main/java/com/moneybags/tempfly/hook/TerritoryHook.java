@@ -1,19 +1,21 @@
 package com.moneybags.tempfly.hook;
 
 import com.moneybags.tempfly.TempFly;
+import com.moneybags.tempfly.fly.MoveQueue;
+import com.moneybags.tempfly.fly.MoveQueue.MoveHandler;
 import com.moneybags.tempfly.fly.RequirementProvider;
 import com.moneybags.tempfly.fly.result.FlightResult;
 import com.moneybags.tempfly.fly.result.ResultAllow;
 import com.moneybags.tempfly.user.FlightUser;
 import com.moneybags.tempfly.util.Console;
 import com.moneybags.tempfly.util.V;
+import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerChangedWorldEvent;
-import org.bukkit.event.player.PlayerMoveEvent;
 import org.bukkit.event.player.PlayerRespawnEvent;
 import org.bukkit.event.player.PlayerTeleportEvent;
 import org.bukkit.scheduler.BukkitRunnable;
@@ -26,9 +28,22 @@ public abstract class TerritoryHook extends TempFlyHook {
         super(tempfly);
     }
 
+    @Override
+    public void setEnabled(boolean enabled) {
+        super.setEnabled(enabled);
+        if (!enabled) {
+            stopManualTracking();
+            cancelEvaluations();
+        }
+    }
+
     @Override
     public void onTempflyReload() {
         super.onTempflyReload();
+        if (!isEnabled()) {
+            stopManualTracking();
+            cancelEvaluations();
+        }
         /**
          for (FlightUser user: getTempFly().getFlightManager().getUsers()) {
          user.submitFlightResult(checkFlightRequirements(user.getPlayer().getUniqueId(), user.getPlayer().getLocation()));
@@ -38,8 +53,11 @@ public abstract class TerritoryHook extends TempFlyHook {
 
 
     private TerritoryTracker manualTracker = null;
-    private final Map<Player, TerritoryWrapper> locationCache = new HashMap<>();
+    private EvaluationQueue evaluations = null;
+    private final Map<UUID, TerritoryWrapper> locationCache = new HashMap<>();
     private final Map<String, TerritoryWrapper> wrapperCache = new HashMap<>();
+    // The players being tracked on each territory, keyed by the territory identifier.
+    private final Map<String, Set<UUID>> territoryPlayers = new HashMap<>();
 
     public void startManualTracking() {
         Console.debug("---> (" + getHookName() + ") Started manual territory tracking");
@@ -56,6 +74,13 @@ public abstract class TerritoryHook extends TempFlyHook {
         }
     }
 
+    private void cancelEvaluations() {
+        if (evaluations != null) {
+            evaluations.cancel();
+            evaluations = null;
+        }
+    }
+
     /**
      * This method is called by the children of SkyblockHook when a player enters an island.
      * It will track the island each player is on and handle flight requirements for the player.
@@ -71,19 +96,16 @@ public abstract class TerritoryHook extends TempFlyHook {
         if (rawTerritory instanceof TerritoryWrapper) {
             rawTerritory = ((TerritoryWrapper) rawTerritory).getRawTerritory();
         }
-        if (locationCache.containsKey(p)) {
+        TerritoryWrapper tracked = locationCache.get(p.getUniqueId());
+        if (tracked != null) {
             // Player already being tracked.
-            if (locationCache.get(p).getRawTerritory().equals(rawTerritory)) {
+            if (tracked.getRawTerritory().equals(rawTerritory)) {
                 // Player is already on this island...
                 return;
             }
             // Player is now on 2 islands at once, this is a bug.
             Console.severe("If you are seeing this message there may be a bug. Please contact the tempfly dev with this info: TerritoryHook | onTerritoeyEnter()");
-            TerritoryWrapper territory = locationCache.get(p);
-            locationCache.remove(p);
-            if (!locationCache.containsValue(territory)) {
-                wrapperCache.remove(getTerritoryIdentifier(rawTerritory));
-            }
+            untrack(p.getUniqueId());
         }
 
         TerritoryWrapper territory = getTerritoryWrapper(rawTerritory);
@@ -91,7 +113,7 @@ public abstract class TerritoryHook extends TempFlyHook {
             Console.debug("--|> Island Identifier: " + getTerritoryIdentifier(rawTerritory), "------ End Territory Enter ------", "");
         }
 
-        locationCache.put(p, territory);
+        track(p.getUniqueId(), territory);
         FlightUser user = tempfly.getFlightManager().getUser(p);
         if (user == null) {
             return;
@@ -107,6 +129,30 @@ public abstract class TerritoryHook extends TempFlyHook {
         }
     }
 
+    /**
+     * Queue a player to have their flight requirements evaluated again over the next few ticks.
+     * Events that affect many players at once should use this rather than evaluating everyone right away.
+     *
+     * @param playerId The player
+     * @param full     True to also evaluate the world and region requirements of this hook.
+     */
+    public void queueEvaluation(UUID playerId, boolean full) {
+        if (evaluations == null) {
+            evaluations = new EvaluationQueue(getTempFly(), this::processEvaluation);
+        }
+        evaluations.queue(playerId, full);
+    }
+
+    private void processEvaluation(Player p, boolean full) {
+        evaluate(p);
+        if (full) {
+            FlightUser user = getUser(p);
+            if (user != null) {
+                user.evaluateFlightRequirement(this, p.getLocation());
+            }
+        }
+    }
+
     public abstract FlightResult checkFlightRequirements(UUID playerId, Location loc);
 
     public abstract FlightResult checkFlightRequirements(UUID playerId, TerritoryWrapper territory);
@@ -121,13 +167,8 @@ public abstract class TerritoryHook extends TempFlyHook {
         if (V.debug) {
             Console.debug("", "------ On territory Exit ------", "--| Player: " + p.getName());
         }
-        if (locationCache.containsKey(p)) {
-            TerritoryWrapper currentTerritory = locationCache.get(p);
-            locationCache.remove(p);
-            if (!locationCache.containsValue(currentTerritory)) {
-                Console.debug("----------------- removing wrapper from cache");
-                wrapperCache.remove(getTerritoryIdentifier(currentTerritory.getRawTerritory()));
-            }
+        TerritoryWrapper currentTerritory = untrack(p.getUniqueId());
+        if (currentTerritory != null) {
             if (V.debug) {
                 Console.debug("--|> Territory Identifier: " + getTerritoryIdentifier(currentTerritory.getRawTerritory()), "------ End Territory Exit ------", "");
             }
@@ -145,13 +186,41 @@ public abstract class TerritoryHook extends TempFlyHook {
                 if (user == null) {
                     return;
                 }
-                if (user.hasFlightRequirement(provider, InquiryType.OUT_OF_SCOPE) && !locationCache.containsKey(user.getPlayer())) {
-                    user.submitFlightResult(new ResultAllow(provider, InquiryType.OUT_OF_SCOPE, V.requirePassDefault));
+                if (user.hasFlightRequirement(provider, InquiryType.OUT_OF_SCOPE) && !isCurrentlyTracking(user.getPlayer())) {
+                    user.submitFlightResult(ResultAllow.of(provider, InquiryType.OUT_OF_SCOPE, V.requirePassDefault));
                 }
             }
         }.runTaskLater(tempfly, 1);
     }
 
+    private void track(UUID u, TerritoryWrapper territory) {
+        locationCache.put(u, territory);
+        territoryPlayers.computeIfAbsent(getTerritoryIdentifier(territory.getRawTerritory()), id -> new HashSet<>()).add(u);
+    }
+
+    /**
+     * Stop tracking a player, the wrapper of their territory is let go if nobody else is on it.
+     *
+     * @return The territory the player was being tracked on or null.
+     */
+    private TerritoryWrapper untrack(UUID u) {
+        TerritoryWrapper territory = locationCache.remove(u);
+        if (territory == null) {
+            return null;
+        }
+        String id = getTerritoryIdentifier(territory.getRawTerritory());
+        Set<UUID> players = territoryPlayers.get(id);
+        if (players != null) {
+            players.remove(u);
+            if (players.isEmpty()) {
+                territoryPlayers.remove(id);
+                Console.debug("----------------- removing wrapper from cache");
+                wrapperCache.remove(id);
+            }
+        }
+        return territory;
+    }
+
     public TerritoryWrapper getTerritoryWrapper(Object rawTerritory) {
         if (rawTerritory == null) {
             return null;
@@ -177,10 +246,15 @@ public abstract class TerritoryHook extends TempFlyHook {
      * @return All the players currently on the island.
      */
     public Player[] getPlayersOn(TerritoryWrapper territory) {
-        List<Player> players = new ArrayList<>();
-        for (Map.Entry<Player, TerritoryWrapper> entry : locationCache.entrySet()) {
-            if (entry.getValue().equals(territory)) {
-                players.add(entry.getKey());
+        Set<UUID> tracked = territoryPlayers.get(getTerritoryIdentifier(territory.getRawTerritory()));
+        if (tracked == null) {
+            return new Player[0];
+        }
+        List<Player> players = new ArrayList<>(tracked.size());
+        for (UUID u : tracked) {
+            Player p = Bukkit.getPlayer(u);
+            if (p != null) {
+                players.add(p);
             }
         }
         return players.toArray(new Player[players.size()]);
@@ -190,14 +264,14 @@ public abstract class TerritoryHook extends TempFlyHook {
      * @return true if the player is currently being tracked on an island
      */
     public boolean isCurrentlyTracking(Player p) {
-        return locationCache.containsKey(p);
+        return locationCache.containsKey(p.getUniqueId());
     }
 
     /**
      * @return The island the player is currently being tracked on.
      */
     public TerritoryWrapper getTrackedTerritory(Player p) {
-        return locationCache.get(p);
+        return locationCache.get(p.getUniqueId());
     }
 
     @Override
@@ -220,8 +294,11 @@ public abstract class TerritoryHook extends TempFlyHook {
     @Override
     public void onUserQuit(FlightUser user) {
         Player p = user.getPlayer();
-        TerritoryWrapper territory = getTerritoryAt(p.getLocation());
-        if (territory != null) {
+        if (evaluations != null) {
+            evaluations.discard(p.getUniqueId());
+        }
+        // Anyone still tracked is let go, even if the territory they were on is gone.
+        if (isCurrentlyTracking(p) || getTerritoryAt(p.getLocation()) != null) {
             onTerritoryExit(p);
         }
     }
@@ -260,40 +337,41 @@ public abstract class TerritoryHook extends TempFlyHook {
 
     private class TerritoryTracker implements Listener {
         private final TerritoryHook hook;
+        // Moves come from the queue of the flight manager, once per tick with the players last position.
+        private final MoveQueue moves;
+        private final MoveHandler handler;
 
         public TerritoryTracker(TerritoryHook hook) {
             this.hook = hook;
+            this.moves = hook.getTempFly().getFlightManager().getMoveQueue();
+            this.handler = (p, from, to) -> hook.updateLocation(p, to);
+            moves.subscribe(handler);
             hook.getTempFly().getServer().getPluginManager().registerEvents(this, hook.getTempFly());
         }
 
         public void unregister() {
-            PlayerMoveEvent.getHandlerList().unregister(this);
+            moves.unsubscribe(handler);
             PlayerRespawnEvent.getHandlerList().unregister(this);
             PlayerTeleportEvent.getHandlerList().unregister(this);
             PlayerChangedWorldEvent.getHandlerList().unregister(this);
         }
 
-        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
-        public void on(PlayerMoveEvent e) {
-            Location to = e.getTo();
-            if (e.getFrom().getBlock().equals(to.getBlock())) {
-                return;
-            }
-            hook.updateLocation(e.getPlayer(), e.getTo());
-        }
-
         @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
         public void on(PlayerRespawnEvent e) {
+            moves.discard(e.getPlayer());
             hook.updateLocation(e.getPlayer(), e.getRespawnLocation());
         }
 
         @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
         public void on(PlayerTeleportEvent e) {
+            // The queue is shared, the move before the teleport is still needed by the flight manager.
+            moves.flush(e.getPlayer());
             hook.updateLocation(e.getPlayer(), e.getTo());
         }
 
         @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
         public void on(PlayerChangedWorldEvent e) {
+            moves.discard(e.getPlayer());
             hook.updateLocation(e.getPlayer(), e.getPlayer().getLocation());
         }
     }
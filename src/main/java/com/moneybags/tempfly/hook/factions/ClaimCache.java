@@ -0,0 +1,112 @@
+package com.moneybags.tempfly.hook.factions;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+/**
+ * Remembers the faction that owns each chunk players have recently been in.
+ * Claims are per chunk, so every block move inside a chunk has the same answer and there is no need to ask
+ * the factions plugin again. The FactionsHook invalidates chunks as land is claimed, overclaimed and unclaimed
+ * and drops every chunk of a faction when it is disbanded. Entries also expire on their own in case land changes
+ * hands without an event.
+ */
+public class ClaimCache {
+
+	// The amount of chunks remembered per world, the least recently used are forgotten first.
+	private static final int MAX_CHUNKS = 4096;
+	// How long in milliseconds a cached chunk is trusted before asking the factions plugin again.
+	private static final long EXPIRE_AFTER = 60000;
+	
+	private final FactionsHook hook;
+	private final Map<UUID, Map<Long, CachedChunk>> worlds = new HashMap<>();
+	
+	public ClaimCache(FactionsHook hook) {
+		this.hook = hook;
+	}
+	
+	/**
+	 * @param loc The location
+	 * @return The faction that owns the chunk at the location, null if there isn't one.
+	 */
+	public synchronized FactionWrapper getFactionAt(Location loc) {
+		World world = loc.getWorld();
+		if (world == null) {
+			return hook.lookupFactionAt(loc);
+		}
+		Map<Long, CachedChunk> chunks = worlds.get(world.getUID());
+		if (chunks == null) {
+			worlds.put(world.getUID(), chunks = new LinkedHashMap<Long, CachedChunk>(256, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+				
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Long, CachedChunk> eldest) {
+					return size() > MAX_CHUNKS;
+				}
+			});
+		}
+		long key = toKey(loc.getBlockX() >> 4, loc.getBlockZ() >> 4);
+		long now = System.currentTimeMillis();
+		CachedChunk cached = chunks.get(key);
+		if (cached != null && now - cached.time < EXPIRE_AFTER) {
+			return cached.faction;
+		}
+		FactionWrapper faction = hook.lookupFactionAt(loc);
+		chunks.put(key, new CachedChunk(faction, now));
+		return faction;
+	}
+	
+	/**
+	 * Forget the owner of a chunk, called when the chunk is claimed or unclaimed.
+	 * @param chunk The chunk
+	 */
+	public synchronized void invalidate(Chunk chunk) {
+		Map<Long, CachedChunk> chunks = worlds.get(chunk.getWorld().getUID());
+		if (chunks != null) {
+			chunks.remove(toKey(chunk.getX(), chunk.getZ()));
+		}
+	}
+	
+	/**
+	 * Forget every chunk owned by a faction, called when it is disbanded.
+	 * @param faction The faction
+	 */
+	public synchronized void invalidate(FactionWrapper faction) {
+		Object raw = faction.getRawTerritory();
+		for (Map<Long, CachedChunk> chunks : worlds.values()) {
+			Iterator<CachedChunk> it = chunks.values().iterator();
+			while (it.hasNext()) {
+				FactionWrapper owner = it.next().faction;
+				if (owner != null && owner.getRawTerritory().equals(raw)) {
+					it.remove();
+				}
+			}
+		}
+	}
+	
+	public synchronized void invalidate() {
+		worlds.clear();
+	}
+	
+	private static long toKey(int x, int z) {
+		return ((long) x << 32) | (z & 0xFFFFFFFFL);
+	}
+	
+	private static class CachedChunk {
+		
+		private final FactionWrapper faction;
+		private final long time;
+		
+		private CachedChunk(FactionWrapper faction, long time) {
+			this.faction = faction;
+			this.time = time;
+		}
+	}
+	
+}
@@ -19,11 +19,12 @@ import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerJoinEvent;
-import org.bukkit.event.player.PlayerMoveEvent;
 import org.bukkit.event.player.PlayerRespawnEvent;
 import org.bukkit.event.player.PlayerTeleportEvent;
 import com.moneybags.tempfly.TempFly;
 import com.moneybags.tempfly.command.TempFlyCommand;
+import com.moneybags.tempfly.fly.MoveQueue;
+import com.moneybags.tempfly.fly.MoveQueue.MoveHandler;
 import com.moneybags.tempfly.fly.result.FlightResult;
 import com.moneybags.tempfly.fly.result.ResultAllow;
 import com.moneybags.tempfly.fly.result.ResultDeny;
@@ -51,6 +52,11 @@ public abstract class FactionsHook extends TerritoryHook implements Listener {
 	private Map<FactionRelation, FactionRequirement> baseRequirements;
 	private Map<String, FactionRoleSettings> roleRequirements;
 	
+	// Moves come from the queue of the flight manager while the hook is enabled.
+	private MoveQueue moves;
+	private final MoveHandler moveHandler = this::processMove;
+	private final ClaimCache claims = new ClaimCache(this);
+	
 	public static enum FactionRelation {
 		HOME(PowerContext.SELF),
 		ENEMY(PowerContext.FOREIGN),
@@ -181,6 +187,9 @@ public abstract class FactionsHook extends TerritoryHook implements Listener {
 	
 	@EventHandler
 	public void onTeleport(PlayerTeleportEvent e) {
+		if (moves != null) {
+			moves.flush(e.getPlayer());
+		}
 		if (e.getFrom().getChunk().equals(e.getTo().getChunk())) {
 			return;
 		}
@@ -196,6 +205,9 @@ public abstract class FactionsHook extends TerritoryHook implements Listener {
 	
 	@EventHandler
 	public void onRespawn(PlayerRespawnEvent e) {
+		if (moves != null) {
+			moves.flush(e.getPlayer());
+		}
 		if (e.getPlayer().getLocation().getChunk().equals(e.getRespawnLocation().getChunk())) {
 			return;
 		}
@@ -209,19 +221,20 @@ public abstract class FactionsHook extends TerritoryHook implements Listener {
 		onFactionEnter(e.getPlayer(), to, null);
 	}
 	
-	@EventHandler
-	public void onMove(PlayerMoveEvent e) {
-		if (e.getFrom().getChunk().equals(e.getTo().getChunk())) {
+	private void processMove(Player p, Location fromLoc, Location toLoc) {
+		if (fromLoc.getWorld() == toLoc.getWorld()
+				&& fromLoc.getBlockX() >> 4 == toLoc.getBlockX() >> 4
+				&& fromLoc.getBlockZ() >> 4 == toLoc.getBlockZ() >> 4) {
 			return;
 		}
-		FactionWrapper from = getFactionAt(e.getFrom());
-		FactionWrapper to = getFactionAt(e.getTo());
+		FactionWrapper from = getFactionAt(fromLoc);
+		FactionWrapper to = getFactionAt(toLoc);
 		if (from.equals(to)) {
 			return;
 		}
 		
-		onFactionExit(e.getPlayer());
-		onFactionEnter(e.getPlayer(), to, null);
+		onFactionExit(p);
+		onFactionEnter(p, to, null);
 	}
 	
 	
@@ -241,6 +254,7 @@ public abstract class FactionsHook extends TerritoryHook implements Listener {
 	 */
 	public void onLandClaimed(Chunk chunk, FactionWrapper faction) {
 		Console.debug("--| Claimed land");
+		claims.invalidate(chunk);
 		for (Entity ent: chunk.getEntities()) {
 			if (!(ent instanceof Player)) {
 				continue;
@@ -251,6 +265,7 @@ public abstract class FactionsHook extends TerritoryHook implements Listener {
 	
 	public void onLandOverClaimed(Chunk chunk, FactionWrapper victim, FactionWrapper agressor) {
 		Console.debug("--| Land overclaimed from (" + getFactionName(victim));
+		claims.invalidate(chunk);
 		for (Entity ent: chunk.getEntities()) {
 			if (!(ent instanceof Player)) {
 				continue;
@@ -262,6 +277,7 @@ public abstract class FactionsHook extends TerritoryHook implements Listener {
 	
 	public void onLandUnclaimed(Chunk chunk) {
 		Console.debug("--| Unclaimed land");
+		claims.invalidate(chunk);
 		for (Entity ent: chunk.getEntities()) {
 			if (!(ent instanceof Player)) {
 				continue;
@@ -272,13 +288,10 @@ public abstract class FactionsHook extends TerritoryHook implements Listener {
 	}
 	
 	public void onPlayerJoinFaction(Player p, FactionWrapper faction) {
-		for (Player player: getOnlineMembers(faction)) {
-			if (p.equals(player)) {
-				continue;
-			}
-			evaluate(player);
+		for (UUID id: getAllMembers(faction)) {
+			queueEvaluation(id, false);
 		}
-		evaluate(p);
+		queueEvaluation(p.getUniqueId(), false);
 	}
 	
 	public List<Player> getOnlineMembers(FactionWrapper faction) {
@@ -299,32 +312,28 @@ public abstract class FactionsHook extends TerritoryHook implements Listener {
 	 * @param faction
 	 */
 	public void onPlayerLeaveFaction(Player p, FactionWrapper faction) {
-		for (Player player: getOnlineMembers(faction)) {
-			if (p.equals(player)) {
-				continue;
-			}
-			evaluate(player);
+		for (UUID id: getAllMembers(faction)) {
+			queueEvaluation(id, false);
 		}
-		evaluate(p);
+		queueEvaluation(p.getUniqueId(), false);
 	}
 	
 	public void onFactionDisband(FactionWrapper faction) {
 		List<UUID> players = Arrays.asList(getAllMembers(faction));
+		claims.invalidate(faction);
 		
 		Bukkit.getScheduler().runTask(tempfly, () -> {
+			// The faction may have been looked up again before it was removed.
+			claims.invalidate(faction);
 			for (UUID playerId: players) {
-				Player p = Bukkit.getPlayer(playerId);
-				if (p == null) {
-					continue;
-				}
-				evaluate(p);
+				queueEvaluation(playerId, false);
 			}
 			for (Player p: getPlayersOn(faction)) {
 				if (!p.isOnline() || players.contains(p.getUniqueId())) {
 					continue;
 				}
-				evaluate(p);
 				onTerritoryExit(p);
+				queueEvaluation(p.getUniqueId(), false);
 			}
 		});
 	}
@@ -337,17 +346,11 @@ public abstract class FactionsHook extends TerritoryHook implements Listener {
 		FactionWrapper faction = getFaction(p.getUniqueId());
 		// Check faction requirements.
 		for (UUID id: getAllMembers(faction)) {
-			Player player = Bukkit.getPlayer(id);
-			if (player != null) {
-				evaluate(player);
-			}
+			queueEvaluation(id, false);
 		}
-		// Check requirements for foreign players in the factions land.
+		// Check requirements for foreign players in the factions land, members are already queued.
 		for (Player player: getPlayersOn(faction)) {
-			if (isMember(player.getUniqueId(), faction)) {
-				continue;
-			}
-			evaluate(player);
+			queueEvaluation(player.getUniqueId(), false);
 		}
 	}
 	
@@ -358,17 +361,10 @@ public abstract class FactionsHook extends TerritoryHook implements Listener {
 	 */
 	public void onFactionRelationshipChange(FactionWrapper faction, FactionWrapper target) {
 		for (UUID id: getAllMembers(faction)) {
-			Player p = Bukkit.getPlayer(id);
-			if (p != null) {
-				evaluate(p);
-			}
+			queueEvaluation(id, false);
 		}
-		
 		for (UUID id: getAllMembers(target)) {
-			Player p = Bukkit.getPlayer(id);
-			if (p != null) {
-				evaluate(p);
-			}
+			queueEvaluation(id, false);
 		}
 	}
 	
@@ -445,7 +441,7 @@ public abstract class FactionsHook extends TerritoryHook implements Listener {
 		Console.debug("", "--- FactionsHook Check Flight Requirements A ---");
 		if (!isEnabled()) {
 			Console.debug("--|!!!> Hook is not enabled. Returning allowed flight!");
-			return new ResultAllow(this, InquiryType.OUT_OF_SCOPE, V.requirePassDefault);
+			return ResultAllow.of(this, InquiryType.OUT_OF_SCOPE, V.requirePassDefault);
 		}
 		return checkRoleRequirements(playerId, faction);
 	}
@@ -457,7 +453,7 @@ public abstract class FactionsHook extends TerritoryHook implements Listener {
 		}
 		FactionWrapper home = getFaction(playerId);
 		if (home == null || isWilderness(home)) {
-			return new ResultDeny(DenyReason.REQUIREMENT, this, InquiryType.OUT_OF_SCOPE, requireFactionSelf
+			return ResultDeny.of(DenyReason.REQUIREMENT, this, InquiryType.OUT_OF_SCOPE, requireFactionSelf
 					.replaceAll("\\{FACTION_NAME}", getFactionName(faction)),
 					false);
 		}
@@ -468,11 +464,11 @@ public abstract class FactionsHook extends TerritoryHook implements Listener {
 		FactionRequirement requirement = roleSettings == null ? baseRequirements.get(relation) : roleSettings.getRequirement(relation);
 		if (requirement == null) {
 			Console.debug("requirement is null");
-			return new ResultAllow(this, InquiryType.OUT_OF_SCOPE, V.requirePassDefault);
+			return ResultAllow.of(this, InquiryType.OUT_OF_SCOPE, V.requirePassDefault);
 		}
 		
 		if (!requirement.isAllowed()) {
-			return new ResultDeny(DenyReason.DISABLED_REGION, this, InquiryType.OUT_OF_SCOPE, requireIllegalTerritory
+			return ResultDeny.of(DenyReason.DISABLED_REGION, this, InquiryType.OUT_OF_SCOPE, requireIllegalTerritory
 					.replaceAll("\\{FACTION_NAME}", getFactionName(faction))
 					.replaceAll("\\{ROLE}", role),
 					!damageIllegal.contains(relation));
@@ -482,7 +478,7 @@ public abstract class FactionsHook extends TerritoryHook implements Listener {
 		
 		if (!requirement.isThresholdMet(PowerContext.SELF, getCurrentPower(home), getMaxPower(home))) {
 			Console.debug("--| Power threshold for flight is not met A.");
-			return new ResultDeny(DenyReason.REQUIREMENT, this, InquiryType.OUT_OF_SCOPE, requirePowerSelf
+			return ResultDeny.of(DenyReason.REQUIREMENT, this, InquiryType.OUT_OF_SCOPE, requirePowerSelf
 					.replaceAll("\\{POWER}", String.valueOf(requirement.getPowerFormatted(PowerContext.SELF, getCurrentPower(home), getMaxPower(home))))
 					.replaceAll("\\{FACTION_NAME}", getFactionName(faction))
 					, !damagePower.contains(relation));
@@ -493,7 +489,7 @@ public abstract class FactionsHook extends TerritoryHook implements Listener {
 		if (!requirement.isThresholdMet(PowerContext.FOREIGN, getCurrentPower(faction), getMaxPower(faction))) {
 			Console.debug("--| Power threshold for flight is not met B.");
 			
-			return new ResultDeny(DenyReason.REQUIREMENT, this, InquiryType.OUT_OF_SCOPE,
+			return ResultDeny.of(DenyReason.REQUIREMENT, this, InquiryType.OUT_OF_SCOPE,
 					(allied ? requirePowerAllied : requirePowerForeign)
 					.replaceAll("\\{POWER}", String.valueOf(requirement.getPowerFormatted(PowerContext.FOREIGN, getCurrentPower(faction), getMaxPower(faction))))
 					.replaceAll("\\{FACTION_NAME}", getFactionName(faction))
@@ -502,7 +498,7 @@ public abstract class FactionsHook extends TerritoryHook implements Listener {
 		
 		
 		Console.debug("--| Power threshold for flight is met.");
-		return new ResultAllow(this, InquiryType.OUT_OF_SCOPE, V.requirePassDefault);
+		return ResultAllow.of(this, InquiryType.OUT_OF_SCOPE, V.requirePassDefault);
 		
 	}
 	
@@ -620,10 +616,20 @@ public abstract class FactionsHook extends TerritoryHook implements Listener {
 	
 	/**
 	 * Get the faction present at a specific location.
+	 * Claims are cached per chunk, see ClaimCache.
+	 * @param loc The location to check
+	 * @return The faction that occupies this location, null if there isn't one.
+	 */
+	public FactionWrapper getFactionAt(Location loc) {
+		return claims.getFactionAt(loc);
+	}
+	
+	/**
+	 * Ask the factions plugin which faction is present at a specific location.
 	 * @param loc The location to check
 	 * @return The faction that occupies this location, null if there isn't one.
 	 */
-	public abstract FactionWrapper getFactionAt(Location loc);
+	public abstract FactionWrapper lookupFactionAt(Location loc);
 	
 	@Override
 	public TerritoryWrapper getTerritoryAt(Location loc) {
@@ -636,7 +642,10 @@ public abstract class FactionsHook extends TerritoryHook implements Listener {
 	 * @param loc The location to check.
 	 * @return true if the location is in the faction land.
 	 */
-	public abstract boolean isInFactionLand(FactionWrapper faction, Location loc);
+	public boolean isInFactionLand(FactionWrapper faction, Location loc) {
+		FactionWrapper at = getFactionAt(loc);
+		return at != null && at.getRawTerritory().equals(faction.getRawTerritory());
+	}
 	
 	
 	
@@ -653,12 +662,40 @@ public abstract class FactionsHook extends TerritoryHook implements Listener {
 		return isInFactionLand((FactionWrapper) territory, loc);
 	}
 	
+	@Override
+	public void setEnabled(boolean enabled) {
+		super.setEnabled(enabled);
+		if (!enabled) {
+			unsubscribeMoves();
+		}
+	}
+	
+	private void subscribeMoves() {
+		if (moves == null) {
+			moves = getTempFly().getFlightManager().getMoveQueue();
+			moves.subscribe(moveHandler);
+		}
+	}
+	
+	private void unsubscribeMoves() {
+		if (moves != null) {
+			moves.unsubscribe(moveHandler);
+			moves = null;
+		}
+	}
+	
 	@Override
 	public void onTempflyReload() {
 		super.onTempflyReload();
+		if (!isEnabled()) {
+			unsubscribeMoves();
+			return;
+		}
+		subscribeMoves();
 		
 		baseRequirements.clear();
 		roleRequirements.clear();
+		claims.invalidate();
 		loadValues();
 		for (Player player: Bukkit.getOnlinePlayers()) {
 			evaluate(player);
@@ -668,6 +705,7 @@ public abstract class FactionsHook extends TerritoryHook implements Listener {
 	@Override
 	public boolean initializeHook() {
 		loadValues();
+		subscribeMoves();
 		getTempFly().getServer().getPluginManager().registerEvents(this, getTempFly());
 		
 		return true;
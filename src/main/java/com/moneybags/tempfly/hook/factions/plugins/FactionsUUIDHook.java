@@ -185,17 +185,9 @@ public class FactionsUUIDHook extends FactionsHook implements Listener {
 	}
 
 	@Override
-	public FactionWrapper getFactionAt(Location loc) {
-		return getFactionWrapper(Board.getInstance().getFactionAt(new FLocation(loc)));
-	}
-
-	@Override
-	public boolean isInFactionLand(FactionWrapper faction, Location loc) {
+	public FactionWrapper lookupFactionAt(Location loc) {
 		Faction rawFaction = Board.getInstance().getFactionAt(new FLocation(loc));
-		if (rawFaction == null) {
-			return false;
-		}
-		return rawFaction.equals(faction.getRawTerritory());
+		return rawFaction == null ? null : getFactionWrapper(rawFaction);
 	}
 	
 	@Override
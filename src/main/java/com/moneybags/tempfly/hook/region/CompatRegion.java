@@ -6,23 +6,34 @@ public class CompatRegion {
 
 	private String id;
 	private Vector min, max;
+	// The interned number of the id, see RegionIds.
+	private final int index;
 	
 	public CompatRegion(String id, Vector min, Vector max) {
 		this.id = id;
 		this.min = min;
 		this.max = max;
+		this.index = RegionIds.intern(id);
 	}
 
 	public CompatRegion(String id) {
 		this.id = id;
 		this.min = new Vector(0, 0, 0);
 		this.max = new Vector(0, 0, 0);
+		this.index = RegionIds.intern(id);
 	}
 
 	public String getId() {
 		return id;
 	}
 	
+	/**
+	 * @return The interned number of this regions id. Regions with the same id always have the same number.
+	 */
+	public int getIndex() {
+		return index;
+	}
+	
 	public Vector getMin() {
 		return min;
 	}
@@ -33,9 +44,20 @@ public class CompatRegion {
 	
 	@Override
 	public boolean equals(Object o) {
-		return (o instanceof CompatRegion) && super.equals(o)
-				|| ((CompatRegion)o).getId().equals(id)
-				&& this.min.equals(((CompatRegion)o).getMin())
-				&& this.max.equals(((CompatRegion)o).getMax()); 
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof CompatRegion)) {
+			return false;
+		}
+		CompatRegion region = (CompatRegion) o;
+		return region.index == index
+				&& this.min.equals(region.getMin())
+				&& this.max.equals(region.getMax()); 
+	}
+	
+	@Override
+	public int hashCode() {
+		return 31 * (31 * index + min.hashCode()) + max.hashCode();
 	}
 }
@@ -0,0 +1,150 @@
+package com.moneybags.tempfly.hook.region;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+/**
+ * Sits in front of the active RegionProvider and remembers the regions at each block players have recently been in.
+ * Location updates ask for the regions every time a player crosses a block, which is usually the same answer as
+ * the last time someone stood there.
+ * 
+ * Identical region sets are interned so every block inside the same regions shares one RegionSet.
+ * The arrays returned are shared and must not be modified.
+ * 
+ * Region plugins don't tell us when regions are redefined, so entries expire on their own after a short time.
+ * Call invalidate() to drop everything immediately.
+ */
+public class RegionCache implements RegionProvider {
+
+	// The amount of blocks remembered per world, the least recently used are forgotten first.
+	private static final int MAX_BLOCKS = 8192;
+	// How long in milliseconds a cached block is trusted before asking the provider again.
+	private static final long EXPIRE_AFTER = 30000;
+	
+	private final RegionProvider provider;
+	private final Map<UUID, Map<Long, CachedBlock>> worlds = new HashMap<>();
+	private final Map<RegionSet, RegionSet> interned = new HashMap<>();
+	
+	private long
+	hits,
+	misses;
+	
+	public RegionCache(RegionProvider provider) {
+		this.provider = provider;
+	}
+	
+	/**
+	 * @return The provider that is being cached.
+	 */
+	public RegionProvider getProvider() {
+		return provider;
+	}
+	
+	@Override
+	public boolean isEnabled() {
+		return provider.isEnabled();
+	}
+	
+	@Override
+	public CompatRegion[] getApplicableRegions(Location loc) {
+		return getRegionSet(loc).getRegions();
+	}
+	
+	/**
+	 * @param loc The location
+	 * @return The interned set of regions at the location.
+	 */
+	public synchronized RegionSet getRegionSet(Location loc) {
+		World world = loc.getWorld();
+		if (world == null) {
+			return RegionSet.of(provider.getApplicableRegions(loc));
+		}
+		Map<Long, CachedBlock> blocks = worlds.get(world.getUID());
+		if (blocks == null) {
+			worlds.put(world.getUID(), blocks = new LinkedHashMap<Long, CachedBlock>(256, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+				
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Long, CachedBlock> eldest) {
+					return size() > MAX_BLOCKS;
+				}
+			});
+		}
+		
+		long key = toKey(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+		long now = System.currentTimeMillis();
+		CachedBlock block = blocks.get(key);
+		if (block != null && now - block.time < EXPIRE_AFTER) {
+			hits++;
+			return block.regions;
+		}
+		misses++;
+		RegionSet regions = intern(RegionSet.of(provider.getApplicableRegions(loc)));
+		blocks.put(key, new CachedBlock(regions, now));
+		return regions;
+	}
+	
+	private RegionSet intern(RegionSet regions) {
+		RegionSet shared = interned.get(regions);
+		if (shared == null) {
+			interned.put(regions, shared = regions);
+		}
+		return shared;
+	}
+	
+	/**
+	 * Forget every cached block and region set. Call this when regions have been created, removed or redefined.
+	 */
+	public synchronized void invalidate() {
+		worlds.clear();
+		interned.clear();
+	}
+	
+	/**
+	 * Forget every cached block in a world.
+	 * @param world The world
+	 */
+	public synchronized void invalidate(World world) {
+		worlds.remove(world.getUID());
+	}
+	
+	public synchronized long getHits() {
+		return hits;
+	}
+	
+	public synchronized long getMisses() {
+		return misses;
+	}
+	
+	/**
+	 * @return The fraction of lookups that were answered from the cache, between 0 and 1.
+	 */
+	public synchronized double getHitRate() {
+		long total = hits + misses;
+		return total == 0 ? 0 : (double) hits / total;
+	}
+	
+	/**
+	 * Packs block coordinates into a long the same way minecraft does, 26 bits x and z, 12 bits y.
+	 */
+	private static long toKey(int x, int y, int z) {
+		return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+	}
+	
+	private static class CachedBlock {
+		
+		private final RegionSet regions;
+		private final long time;
+		
+		private CachedBlock(RegionSet regions, long time) {
+			this.regions = regions;
+			this.time = time;
+		}
+	}
+
+}
@@ -0,0 +1,57 @@
+package com.moneybags.tempfly.hook.region;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives every region id a small number the first time it is seen so regions can be compared and
+ * stored as numbers instead of strings. Numbers are never reused while the server is running.
+ */
+public class RegionIds {
+
+	private static final Map<String, Integer> indexes = new ConcurrentHashMap<>();
+	private static final List<String> ids = new ArrayList<>();
+	
+	/**
+	 * @param id The region id
+	 * @return The number representing the region id.
+	 */
+	public static int intern(String id) {
+		Integer index = indexes.get(id);
+		if (index != null) {
+			return index;
+		}
+		synchronized (ids) {
+			index = indexes.get(id);
+			if (index == null) {
+				index = ids.size();
+				ids.add(id);
+				indexes.put(id, index);
+			}
+			return index;
+		}
+	}
+	
+	/**
+	 * Look up the number of a region id without interning it.
+	 * @param id The region id
+	 * @return The number representing the region id, -1 if it has never been interned.
+	 */
+	public static int lookup(String id) {
+		Integer index = indexes.get(id);
+		return index == null ? -1 : index;
+	}
+	
+	/**
+	 * @param index The number of an interned region id
+	 * @return The region id or null if there is no region with this number.
+	 */
+	public static String getId(int index) {
+		synchronized (ids) {
+			return index >= 0 && index < ids.size() ? ids.get(index) : null;
+		}
+	}
+	
+}
@@ -0,0 +1,104 @@
+package com.moneybags.tempfly.hook.region;
+
+import java.util.Arrays;
+
+/**
+ * An immutable set of regions a location is inside of.
+ * Membership is stored as a sorted array of interned region ids, so checking if a region is in the set or if
+ * two sets contain the same regions doesn't need to compare any strings.
+ * Two sets are equal if they contain the same region ids.
+ */
+public final class RegionSet {
+
+	public static final RegionSet EMPTY = new RegionSet(new CompatRegion[0]);
+	
+	private final CompatRegion[] regions;
+	// The distinct interned ids of the regions, sorted.
+	private final int[] indexes;
+	private final int hash;
+	
+	private RegionSet(CompatRegion[] regions) {
+		this.regions = regions;
+		int[] indexes = new int[regions.length];
+		for (int i = 0; i < regions.length; i++) {
+			indexes[i] = regions[i].getIndex();
+		}
+		Arrays.sort(indexes);
+		int distinct = 0;
+		for (int i = 0; i < indexes.length; i++) {
+			if (i == 0 || indexes[i] != indexes[distinct - 1]) {
+				indexes[distinct++] = indexes[i];
+			}
+		}
+		this.indexes = distinct == indexes.length ? indexes : Arrays.copyOf(indexes, distinct);
+		this.hash = Arrays.hashCode(this.indexes);
+	}
+	
+	/**
+	 * @param regions The regions, the array should not be modified afterwards.
+	 * @return A set of the regions.
+	 */
+	public static RegionSet of(CompatRegion[] regions) {
+		return regions == null || regions.length == 0 ? EMPTY : new RegionSet(regions);
+	}
+	
+	/**
+	 * @return The regions in the set. This array is shared and must not be modified.
+	 */
+	public CompatRegion[] getRegions() {
+		return regions;
+	}
+	
+	public int size() {
+		return regions.length;
+	}
+	
+	public boolean contains(CompatRegion region) {
+		return contains(region.getIndex());
+	}
+	
+	public boolean contains(String id) {
+		// A region id that was never interned can't be in any set.
+		int index = RegionIds.lookup(id);
+		return index >= 0 && contains(index);
+	}
+	
+	public boolean contains(int index) {
+		return Arrays.binarySearch(indexes, index) >= 0;
+	}
+	
+	/**
+	 * @return true if any region in this set is also in the other set.
+	 */
+	public boolean intersects(RegionSet other) {
+		int i = 0, j = 0;
+		while (i < indexes.length && j < other.indexes.length) {
+			if (indexes[i] == other.indexes[j]) {
+				return true;
+			} else if (indexes[i] < other.indexes[j]) {
+				i++;
+			} else {
+				j++;
+			}
+		}
+		return false;
+	}
+	
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof RegionSet)) {
+			return false;
+		}
+		RegionSet other = (RegionSet) o;
+		return hash == other.hash && Arrays.equals(indexes, other.indexes);
+	}
+	
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+}
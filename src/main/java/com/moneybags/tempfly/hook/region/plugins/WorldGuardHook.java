@@ -1,10 +1,15 @@
 package com.moneybags.tempfly.hook.region.plugins;
 
-import java.lang.reflect.Constructor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.bukkit.Location;
 import org.bukkit.World;
@@ -13,6 +18,8 @@ import org.bukkit.plugin.Plugin;
 import com.moneybags.tempfly.TempFly;
 import com.moneybags.tempfly.hook.region.CompatRegion;
 import com.moneybags.tempfly.hook.region.RegionProvider;
+import com.moneybags.tempfly.util.Console;
+import com.moneybags.tempfly.util.V;
 import com.sk89q.worldguard.bukkit.WorldGuardPlugin;
 import com.sk89q.worldguard.protection.ApplicableRegionSet;
 import com.sk89q.worldguard.protection.managers.RegionManager;
@@ -20,18 +27,28 @@ import com.sk89q.worldguard.protection.regions.ProtectedRegion;
 
 public class WorldGuardHook implements RegionProvider {
 	
+	// How long in milliseconds a worlds region manager is reused before asking worldguard again, it is replaced when worldguard reloads.
+	private static final long MANAGER_EXPIRE = 1000;
+	
 	private boolean enabled;
 	
     private static Object worldGuard = null;
     private static Object worldGuardPlugin = null;
     private static Object regionContainer = null;
-    private static Method regionContainerGetMethod = null;
-    private static Method worldAdaptMethod = null;
-    private static Method regionManagerGetMethod = null;
-    private static Constructor<?> vectorConstructor = null;
-    private static Method vectorConstructorMethod = null;
+    
+    /*
+     * Resolved once when the hook loads, the region set is looked up every time a player crosses a block.
+     * regionContainerGet is bound to the region container.
+     */
+    private static MethodHandle regionContainerGet = null;
+    private static MethodHandle worldAdapt = null;
+    private static MethodHandle regionManagerGet = null;
+    private static MethodHandle vectorFactory = null;
+    
+    private final Map<UUID, CachedManager> managers = new ConcurrentHashMap<>();
 
     public WorldGuardHook(TempFly tempfly) {
+    	MethodHandles.Lookup lookup = MethodHandles.lookup();
         try {
             Class<?> worldGuardClass = Class.forName("com.sk89q.worldguard.WorldGuard");
             Method getInstanceMethod = worldGuardClass.getMethod("getInstance");
@@ -52,8 +69,8 @@ public class WorldGuardHook implements RegionProvider {
                 
                 Class<?> worldEditWorldClass = Class.forName("com.sk89q.worldedit.world.World");
                 Class<?> worldEditAdapterClass = Class.forName("com.sk89q.worldedit.bukkit.BukkitAdapter");
-                worldAdaptMethod = worldEditAdapterClass.getMethod("adapt", World.class);
-                regionContainerGetMethod = regionContainer.getClass().getMethod("get", worldEditWorldClass);
+                worldAdapt = lookup.unreflect(worldEditAdapterClass.getMethod("adapt", World.class));
+                regionContainerGet = lookup.unreflect(regionContainer.getClass().getMethod("get", worldEditWorldClass)).bindTo(regionContainer);
             } catch (Exception ex) {
                 regionContainer = null;
                 return;
@@ -67,7 +84,7 @@ public class WorldGuardHook implements RegionProvider {
 				return;
 			}
             try {
-                regionContainerGetMethod = regionContainer.getClass().getMethod("get", World.class);
+            	regionContainerGet = lookup.unreflect(regionContainer.getClass().getMethod("get", World.class)).bindTo(regionContainer);
             } catch (Exception ex) {
                 regionContainer = null;
                 return;
@@ -75,13 +92,13 @@ public class WorldGuardHook implements RegionProvider {
         }
         try {
             Class<?> vectorClass = Class.forName("com.sk89q.worldedit.Vector");
-            vectorConstructor = vectorClass.getConstructor(Double.TYPE, Double.TYPE, Double.TYPE);
-            regionManagerGetMethod = RegionManager.class.getMethod("getApplicableRegions", vectorClass);
+            vectorFactory = lookup.findConstructor(vectorClass, MethodType.methodType(void.class, Double.TYPE, Double.TYPE, Double.TYPE));
+            regionManagerGet = lookup.unreflect(RegionManager.class.getMethod("getApplicableRegions", vectorClass));
         } catch (Exception ex) {
             try {
                 Class<?> vectorClass = Class.forName("com.sk89q.worldedit.math.BlockVector3");
-                vectorConstructorMethod = vectorClass.getMethod("at", Double.TYPE, Double.TYPE, Double.TYPE);
-                regionManagerGetMethod = RegionManager.class.getMethod("getApplicableRegions", vectorClass);
+                vectorFactory = lookup.unreflect(vectorClass.getMethod("at", Double.TYPE, Double.TYPE, Double.TYPE));
+                regionManagerGet = lookup.unreflect(RegionManager.class.getMethod("getApplicableRegions", vectorClass));
             } catch (Exception sodonewiththis) {
                 regionContainer = null;
                 return;
@@ -91,16 +108,26 @@ public class WorldGuardHook implements RegionProvider {
     }
 
     public RegionManager getRegionManager(World world) {
-        if (regionContainer == null || regionContainerGetMethod == null) return null;
+        if (regionContainer == null || regionContainerGet == null) return null;
+        long now = System.currentTimeMillis();
+        CachedManager cached = managers.get(world.getUID());
+        if (cached != null && now - cached.time < MANAGER_EXPIRE) {
+        	return cached.manager;
+        }
         RegionManager regionManager = null;
         try {
-            if (worldAdaptMethod != null) {
-                Object worldEditWorld = worldAdaptMethod.invoke(null, world);
-                regionManager = (RegionManager)regionContainerGetMethod.invoke(regionContainer, worldEditWorld);
+            if (worldAdapt != null) {
+                regionManager = (RegionManager) regionContainerGet.invoke(worldAdapt.invoke(world));
             } else {
-                regionManager = (RegionManager)regionContainerGetMethod.invoke(regionContainer, world);
+                regionManager = (RegionManager) regionContainerGet.invoke(world);
             }
-        } catch (Exception e) {}
+        } catch (Throwable e) {
+        	Console.debug("--| Failed to get the worldguard region manager for world: " + world.getName());
+        	if (V.debug) {
+        		e.printStackTrace();
+        	}
+        }
+        managers.put(world.getUID(), new CachedManager(regionManager, now));
         return regionManager;
     }
 
@@ -108,20 +135,25 @@ public class WorldGuardHook implements RegionProvider {
         RegionManager regionManager = getRegionManager(location.getWorld());
         if (regionManager == null) return null;
         try {
-            Object vector = vectorConstructorMethod == null
-                    ? vectorConstructor.newInstance(location.getX(), location.getY(), location.getZ())
-                    : vectorConstructorMethod.invoke(null, location.getX(), location.getY(), location.getZ());
-            return (ApplicableRegionSet)regionManagerGetMethod.invoke(regionManager, vector);
-        } catch (Exception ex) {
-           
+            Object vector = vectorFactory.invoke(location.getX(), location.getY(), location.getZ());
+            return (ApplicableRegionSet) regionManagerGet.invoke(regionManager, vector);
+        } catch (Throwable ex) {
+        	Console.debug("--| Failed to get the worldguard regions at: " + location.toString());
+        	if (V.debug) {
+        		ex.printStackTrace();
+        	}
         }
         return null;
     }
     
     @Override
     public CompatRegion[] getApplicableRegions(Location loc) {
-    	List<CompatRegion> list = new ArrayList<>();
-    	for (ProtectedRegion r: getRegionSet(loc)) {
+    	ApplicableRegionSet set = getRegionSet(loc);
+    	if (set == null) {
+    		return new CompatRegion[0];
+    	}
+    	List<CompatRegion> list = new ArrayList<>(set.size());
+    	for (ProtectedRegion r: set) {
     		list.add(new CompatRegion(r.getId()));
     	}
     	return list.toArray(new CompatRegion[list.size()]);
@@ -131,4 +163,15 @@ public class WorldGuardHook implements RegionProvider {
 	public boolean isEnabled() {
 		return enabled;
 	}
+	
+	private static class CachedManager {
+		
+		private final RegionManager manager;
+		private final long time;
+		
+		private CachedManager(RegionManager manager, long time) {
+			this.manager = manager;
+			this.time = time;
+		}
+	}
 }
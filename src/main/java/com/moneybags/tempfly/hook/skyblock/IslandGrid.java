@@ -0,0 +1,130 @@
+package com.moneybags.tempfly.hook.skyblock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A tempfly side index of the x/z bounds of every island. Skyblock islands are laid out on a grid
+ * and never overlap, so finding the island at a location is a cell lookup and a couple of comparisons
+ * rather than a call into the skyblock plugin every time a player moves.
+ * The SkyblockHook fills the grid when it loads and keeps it up to date as islands are created, resized and deleted.
+ * Only the raw islands are kept, the hook resolves their wrappers when they are looked up so the grid never holds
+ * onto settings that have been evicted from the wrapper cache.
+ */
+public class IslandGrid {
+
+	// Each cell covers 256x256 blocks, islands larger than a cell are added to every cell they overlap.
+	private static final int CELL_SHIFT = 8;
+	
+	private final Map<Long, List<IslandBounds>> cells = new HashMap<>();
+	private final Map<Object, IslandBounds> islands = new HashMap<>();
+	
+	/**
+	 * Add an island to the grid, replacing its old bounds if it is already indexed.
+	 * @param rawIsland The island object from the skyblock plugin
+	 * @param minX The lowest x coordinate of the island
+	 * @param minZ The lowest z coordinate of the island
+	 * @param maxX The highest x coordinate of the island
+	 * @param maxZ The highest z coordinate of the island
+	 */
+	public synchronized void add(Object rawIsland, int minX, int minZ, int maxX, int maxZ) {
+		remove(rawIsland);
+		IslandBounds bounds = new IslandBounds(rawIsland, Math.min(minX, maxX), Math.min(minZ, maxZ), Math.max(minX, maxX), Math.max(minZ, maxZ));
+		islands.put(rawIsland, bounds);
+		for (int x = bounds.minX >> CELL_SHIFT; x <= bounds.maxX >> CELL_SHIFT; x++) {
+			for (int z = bounds.minZ >> CELL_SHIFT; z <= bounds.maxZ >> CELL_SHIFT; z++) {
+				List<IslandBounds> cell = cells.get(toKey(x, z));
+				if (cell == null) {
+					cells.put(toKey(x, z), cell = new ArrayList<>(1));
+				}
+				cell.add(bounds);
+			}
+		}
+	}
+	
+	/**
+	 * Remove an island from the grid.
+	 * @param rawIsland The island object from the skyblock plugin
+	 */
+	public synchronized void remove(Object rawIsland) {
+		IslandBounds bounds = islands.remove(rawIsland);
+		if (bounds == null) {
+			return;
+		}
+		for (int x = bounds.minX >> CELL_SHIFT; x <= bounds.maxX >> CELL_SHIFT; x++) {
+			for (int z = bounds.minZ >> CELL_SHIFT; z <= bounds.maxZ >> CELL_SHIFT; z++) {
+				List<IslandBounds> cell = cells.get(toKey(x, z));
+				if (cell != null && cell.remove(bounds) && cell.isEmpty()) {
+					cells.remove(toKey(x, z));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @param x The block x coordinate
+	 * @param z The block z coordinate
+	 * @return The raw island whose bounds contain the coordinates, null if there isn't one.
+	 */
+	public synchronized Object getIslandAt(int x, int z) {
+		List<IslandBounds> cell = cells.get(toKey(x >> CELL_SHIFT, z >> CELL_SHIFT));
+		if (cell == null) {
+			return null;
+		}
+		for (IslandBounds bounds : cell) {
+			if (bounds.contains(x, z)) {
+				return bounds.island;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * @param rawIsland The island object from the skyblock plugin
+	 * @param x The block x coordinate
+	 * @param z The block z coordinate
+	 * @return True if the island is indexed and its bounds contain the coordinates.
+	 */
+	public synchronized boolean isInIsland(Object rawIsland, int x, int z) {
+		IslandBounds bounds = islands.get(rawIsland);
+		return bounds != null && bounds.contains(x, z);
+	}
+	
+	/**
+	 * @param rawIsland The island object from the skyblock plugin
+	 * @return True if the island is in the grid.
+	 */
+	public synchronized boolean isIndexed(Object rawIsland) {
+		return islands.containsKey(rawIsland);
+	}
+	
+	public synchronized void clear() {
+		cells.clear();
+		islands.clear();
+	}
+	
+	private static long toKey(int x, int z) {
+		return ((long) x << 32) | (z & 0xFFFFFFFFL);
+	}
+	
+	private static class IslandBounds {
+		
+		private final Object island;
+		private final int minX, minZ, maxX, maxZ;
+		
+		private IslandBounds(Object island, int minX, int minZ, int maxX, int maxZ) {
+			this.island = island;
+			this.minX = minX;
+			this.minZ = minZ;
+			this.maxX = maxX;
+			this.maxZ = maxZ;
+		}
+		
+		private boolean contains(int x, int z) {
+			return x >= minX && x <= maxX && z >= minZ && z <= maxZ;
+		}
+	}
+	
+}
@@ -0,0 +1,119 @@
+package com.moneybags.tempfly.hook.skyblock;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+
+import com.moneybags.tempfly.fly.result.FlightResult;
+
+/**
+ * Remembers the outcome of each skyblock requirement a player has been checked against on an island.
+ * Running a requirement asks the skyblock plugin for island levels and challenge progress, which only change
+ * when the SkyblockHook is told an island level changed or a challenge was completed, at which point
+ * the affected players and islands are forgotten. Entries also expire on their own in case progress changes
+ * without an event.
+ */
+public class RequirementMemo {
+
+	// How long in milliseconds an outcome is trusted before running the requirement again.
+	private static final long EXPIRE_AFTER = 30000;
+	
+	private final Map<UUID, Map<Key, Outcome>> players = new HashMap<>();
+	
+	/**
+	 * @return The remembered outcome, null if there isn't one or it has expired.
+	 */
+	public synchronized FlightResult get(UUID playerId, SkyblockRequirement requirement, IslandWrapper island) {
+		Map<Key, Outcome> outcomes = players.get(playerId);
+		if (outcomes == null) {
+			return null;
+		}
+		Key key = new Key(requirement, island.getRawIsland());
+		Outcome outcome = outcomes.get(key);
+		if (outcome == null) {
+			return null;
+		}
+		if (System.currentTimeMillis() - outcome.time >= EXPIRE_AFTER) {
+			outcomes.remove(key);
+			return null;
+		}
+		return outcome.result;
+	}
+	
+	/**
+	 * Remember an outcome, the result must be one of the shared results as it is handed out again.
+	 */
+	public synchronized void put(UUID playerId, SkyblockRequirement requirement, IslandWrapper island, FlightResult result) {
+		Map<Key, Outcome> outcomes = players.get(playerId);
+		if (outcomes == null) {
+			players.put(playerId, outcomes = new HashMap<>());
+		}
+		outcomes.put(new Key(requirement, island.getRawIsland()), new Outcome(result, System.currentTimeMillis()));
+	}
+	
+	/**
+	 * Forget every outcome of a player, called when their own level or challenges change.
+	 * @param playerId The player
+	 */
+	public synchronized void invalidate(UUID playerId) {
+		players.remove(playerId);
+	}
+	
+	/**
+	 * Forget every outcome checked on an island, called when the island level or its owners challenges change.
+	 * @param island The island
+	 */
+	public synchronized void invalidate(IslandWrapper island) {
+		Object raw = island.getRawIsland();
+		Iterator<Map<Key, Outcome>> it = players.values().iterator();
+		while (it.hasNext()) {
+			Map<Key, Outcome> outcomes = it.next();
+			outcomes.keySet().removeIf(key -> key.island.equals(raw));
+			if (outcomes.isEmpty()) {
+				it.remove();
+			}
+		}
+	}
+	
+	public synchronized void invalidate() {
+		players.clear();
+	}
+	
+	private static class Key {
+		
+		private final SkyblockRequirement requirement;
+		private final Object island;
+		
+		private Key(SkyblockRequirement requirement, Object island) {
+			this.requirement = requirement;
+			this.island = island;
+		}
+		
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(requirement) + island.hashCode();
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return requirement == other.requirement && island.equals(other.island);
+		}
+	}
+	
+	private static class Outcome {
+		
+		private final FlightResult result;
+		private final long time;
+		
+		private Outcome(FlightResult result, long time) {
+			this.result = result;
+			this.time = time;
+		}
+	}
+	
+}
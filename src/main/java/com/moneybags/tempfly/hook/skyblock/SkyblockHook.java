@@ -2,11 +2,12 @@ package com.moneybags.tempfly.hook.skyblock;
 
 import java.text.DecimalFormat;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
@@ -56,6 +57,14 @@ public abstract class SkyblockHook extends TerritoryHook {
 	
 	
 	private Map<SkyblockRequirementType, SkyblockRequirement[]> requirements;
+	// The same requirements keyed by their upper case name, world, region or role.
+	private Map<SkyblockRequirementType, Map<String, SkyblockRequirement>> requirementIndex;
+	private final RequirementMemo outcomes = new RequirementMemo();
+	
+	private final IslandGrid grid = new IslandGrid();
+	// False when the skyblock plugin can't give us the bounds of its islands, every lookup then goes to the plugin.
+	private volatile boolean gridEnabled;
+	private final Map<UUID, Boolean> islandWorlds = new ConcurrentHashMap<>();
 	
 	public SkyblockHook(TempFly plugin) {
 		super(plugin);
@@ -66,6 +75,7 @@ public abstract class SkyblockHook extends TerritoryHook {
 		super.onTempflyReload();
 		
 		loadValues();
+		rebuildIslandGrid();
 		for (Player player: Bukkit.getOnlinePlayers()) {
 			evaluate(player);
 		}
@@ -95,15 +105,105 @@ public abstract class SkyblockHook extends TerritoryHook {
 	@Override
 	public boolean initializeHook() {
 		loadValues();
+		rebuildIslandGrid();
 		return true;
 	}
 	
 	
+	
+	/**
+	 * 
+	 * --=------------=--
+	 *    Island Grid
+	 * --=------------=--
+	 * 
+	 */
+	
+	
+	
+	/**
+	 * Index the bounds of every island from the skyblock plugin. If the plugin doesn't expose its islands
+	 * or any island has no bounds the grid is left disabled and lookups fall back to the plugin.
+	 */
+	public void rebuildIslandGrid() {
+		grid.clear();
+		islandWorlds.clear();
+		gridEnabled = false;
+		Collection<?> islands = getAllIslands();
+		if (islands == null) {
+			Console.debug("--| Skyblock plugin does not support the island grid, island lookups will use the plugin.");
+			return;
+		}
+		for (Object rawIsland: islands) {
+			if (!indexIsland(rawIsland)) {
+				Console.debug("--| Skyblock island has no bounds, island lookups will use the plugin.");
+				grid.clear();
+				return;
+			}
+		}
+		gridEnabled = true;
+		Console.debug("--| Indexed " + islands.size() + " islands in the island grid.");
+	}
+	
+	/**
+	 * Add an island to the grid or update its bounds, children should call this when an island is created or resized.
+	 * @param rawIsland The island object from the skyblock plugin.
+	 * @return false if the bounds of the island are unknown.
+	 */
+	protected boolean indexIsland(Object rawIsland) {
+		int[] bounds = rawIsland == null ? null : getIslandBounds(rawIsland);
+		if (bounds == null) {
+			return false;
+		}
+		grid.add(rawIsland, bounds[0], bounds[1], bounds[2], bounds[3]);
+		return true;
+	}
+	
+	/**
+	 * Remove an island from the grid, children should call this when an island is deleted.
+	 * @param rawIsland The island object from the skyblock plugin.
+	 */
+	protected void unindexIsland(Object rawIsland) {
+		grid.remove(rawIsland);
+	}
+	
+	/**
+	 * Override to let the island grid index the islands of the skyblock plugin.
+	 * @return Every island from the skyblock plugin, null if the plugin can't list them.
+	 */
+	protected Collection<?> getAllIslands() {
+		return null;
+	}
+	
+	/**
+	 * Override along with getAllIslands to let the island grid index the islands of the skyblock plugin.
+	 * @param rawIsland The island object from the skyblock plugin.
+	 * @return The block bounds of the island as {minX, minZ, maxX, maxZ}, null if they are unknown.
+	 */
+	protected int[] getIslandBounds(Object rawIsland) {
+		return null;
+	}
+	
+	private boolean isCachedIslandWorld(Location loc) {
+		World world = loc.getWorld();
+		if (world == null) {
+			return false;
+		}
+		Boolean cached = islandWorlds.get(world.getUID());
+		if (cached == null) {
+			islandWorlds.put(world.getUID(), cached = isIslandWorld(loc));
+		}
+		return cached;
+	}
+	
+	
 	public void loadValues() {
 		Console.debug("", "----Loading Skyblock Settings----");
 		FileConfiguration config = getConfig();
 		basePerms = new HashMap<>();
 		requirements = new HashMap<>();
+		requirementIndex = new HashMap<>();
+		outcomes.invalidate();
 		this.wilderness = config.getBoolean("flight_settings.wilderness");
 		String pathPerms = "flight_settings.base_permissions";
 		ConfigurationSection csPerms = config.getConfigurationSection(pathPerms);
@@ -128,7 +228,7 @@ public abstract class SkyblockHook extends TerritoryHook {
 		
 		if (config.contains("unlockables.environment.wilderness")) {
 			Console.debug("", "<< Loading wilderness requirements >>");
-			requirements.put(SkyblockRequirementType.WILDERNESS, new SkyblockRequirement[] {
+			putRequirements(SkyblockRequirementType.WILDERNESS, new SkyblockRequirement[] {
 					loadRequirement(config, null, "unlockables.environment.wilderness", SkyblockRequirementType.WILDERNESS)
 			});
 		}
@@ -141,7 +241,7 @@ public abstract class SkyblockHook extends TerritoryHook {
 				list.add(loadRequirement(config, world, "unlockables.environment.worlds." + world, SkyblockRequirementType.WORLD));
 			}
 			if (list.size() > 0) {
-				requirements.put(SkyblockRequirementType.WORLD, list.toArray(new SkyblockRequirement[list.size()]));
+				putRequirements(SkyblockRequirementType.WORLD, list.toArray(new SkyblockRequirement[list.size()]));
 			}
 		}
 		
@@ -153,7 +253,7 @@ public abstract class SkyblockHook extends TerritoryHook {
 				list.add(loadRequirement(config, region, "unlockables.environment.regions." + region, SkyblockRequirementType.REGION));
 			}
 			if (list.size() > 0) {
-				requirements.put(SkyblockRequirementType.REGION, list.toArray(new SkyblockRequirement[list.size()]));
+				putRequirements(SkyblockRequirementType.REGION, list.toArray(new SkyblockRequirement[list.size()]));
 			}
 		}
 		
@@ -166,13 +266,24 @@ public abstract class SkyblockHook extends TerritoryHook {
 				list.add(loadRequirement(config, role.toUpperCase(), "unlockables.island_roles." + role, SkyblockRequirementType.ISLAND_ROLE));
 			}
 			if (list.size() > 0) {
-				requirements.put(SkyblockRequirementType.ISLAND_ROLE, list.toArray(new SkyblockRequirement[list.size()]));
+				putRequirements(SkyblockRequirementType.ISLAND_ROLE, list.toArray(new SkyblockRequirement[list.size()]));
 			}
 		}
 		Console.debug("----END Skyblock Settings----", "");
 		PageIslandSettings.initialize(this);
 	}
 	
+	private void putRequirements(SkyblockRequirementType type, SkyblockRequirement[] array) {
+		requirements.put(type, array);
+		Map<String, SkyblockRequirement> index = new HashMap<>();
+		for (SkyblockRequirement require: array) {
+			if (require.getName() != null) {
+				index.putIfAbsent(require.getName().toUpperCase(), require);
+			}
+		}
+		requirementIndex.put(type, index);
+	}
+	
 	private SkyblockRequirement loadRequirement(FileConfiguration config, String name, String path, SkyblockRequirementType type) {
 		return new SkyblockRequirement(
 				loadChallenges(config, path + ".player_"), loadChallenges(config, path + ".island_"),
@@ -251,36 +362,27 @@ public abstract class SkyblockHook extends TerritoryHook {
 	
 	public SkyblockRequirement[] getRequirements(CompatRegion[] regions) {
 		List<SkyblockRequirement> found = new ArrayList<>();
-		SkyblockRequirement[] iter = getRequirements(SkyblockRequirementType.REGION);
 		for (CompatRegion region: regions) {
-			for (SkyblockRequirement require: iter) {
-				if (region.getId().equals(require.getName())) {
-					found.add(require);
-				}
+			SkyblockRequirement require = getRequirement(SkyblockRequirementType.REGION, region.getId());
+			if (require != null) {
+				found.add(require);
 			}
 		}
 		return found.toArray(new SkyblockRequirement[found.size()]);
 	}
 	
 	public boolean hasRequirement(SkyblockRequirementType type, String name) {
-		if (!hasRequirement(type)) {
-			return false;
-		}
-		for (SkyblockRequirement require: getRequirements(type)) {
-			if (require.getName().equals(name.toUpperCase())) {
-				return true;
-			}
-		}
-		return false;
+		return getRequirement(type, name) != null;
 	}
 	
+	/**
+	 * @param type The type of requirement
+	 * @param name The world, region or role, case insensitive.
+	 * @return The requirement, null if there isn't one.
+	 */
 	public SkyblockRequirement getRequirement(SkyblockRequirementType type, String name) {
-		for (SkyblockRequirement require: getRequirements(type)) {
-			if (require.getName().equals(name.toUpperCase())) {
-				return require;
-			}
-		}
-		return null;
+		Map<String, SkyblockRequirement> index = requirementIndex.get(type);
+		return index == null || name == null ? null : index.get(name.toUpperCase());
 	}
 	
 	
@@ -319,18 +421,17 @@ public abstract class SkyblockHook extends TerritoryHook {
 	 * @param island The island.
 	 */
 	public void onIslandLevelChange(IslandWrapper island) {
-		List<Player> members = Arrays.asList(getOnlineMembers(island)); 
+		outcomes.invalidate(island);
+		UUID[] members = getIslandMembers(island);
+		for (UUID member: members) {
+			outcomes.invalidate(member);
+		}
+		// Visitors only need the island re-checked, members carry their level to world and region requirements.
 		for (Player p: getPlayersOn(island)) {
-			if (members.contains(p)) {
-				continue;
-			}
-			FlightUser user = getTempFly().getFlightManager().getUser(p);
-			user.submitFlightResult(checkRoleRequirements(p.getUniqueId(), island));
+			queueEvaluation(p.getUniqueId(), false);
 		}
-		for (Player p: members) {
-			FlightUser user = getTempFly().getFlightManager().getUser(p);
-			user.submitFlightResult(checkFlightRequirements(p.getUniqueId(), p.getLocation()));
-			user.evaluateFlightRequirement(this, p.getLocation());
+		for (UUID member: members) {
+			queueEvaluation(member, true);
 		}
 	}
 	
@@ -346,23 +447,18 @@ public abstract class SkyblockHook extends TerritoryHook {
 	 */
 	public void onChallengeComplete(Player p) {
 		Console.debug("-- On challenge complete ---");
-		checkFlightRequirements(p.getUniqueId(), p.getLocation());
+		outcomes.invalidate(p.getUniqueId());
 		IslandWrapper island = getIslandOwnedBy(p.getUniqueId());
+		if (island != null) {
+			outcomes.invalidate(island);
+		}
+		checkFlightRequirements(p.getUniqueId(), p.getLocation());
 		if (island != null) {
 			for (Player onIsland: getPlayersOn(island)) {
 				if (onIsland == null || onIsland.equals(p)) {
 					continue;
 				}
-				Console.debug(onIsland.getName());
-				Console.debug(p.getName());
-				Console.debug(p == onIsland);
-				FlightUser user = getTempFly().getFlightManager().getUser(onIsland);
-				if (user == null) {
-					//TODO why is this returning null users here.
-					return;
-				}
-				user.submitFlightResult(checkRoleRequirements(onIsland.getUniqueId(), island));
-				user.evaluateFlightRequirement(this, onIsland.getLocation());
+				queueEvaluation(onIsland.getUniqueId(), true);
 			}
 		}
 		FlightUser user = getTempFly().getFlightManager().getUser(p);
@@ -373,6 +469,12 @@ public abstract class SkyblockHook extends TerritoryHook {
 	}
 	
 
+	@Override
+	public void onUserQuit(FlightUser user) {
+		super.onUserQuit(user);
+		outcomes.invalidate(user.getPlayer().getUniqueId());
+	}
+	
 	@Override
 	public TerritoryWrapper createTerritoryWrapper(Object rawTerritory, TerritoryHook hook) {
 		return new IslandWrapper(rawTerritory, this);
@@ -412,8 +514,8 @@ public abstract class SkyblockHook extends TerritoryHook {
 		if (island == null) {
 			Console.debug("--|> Island is null, checking wilderness requirements...");
 			return canFlyWilderness() ?
-					new ResultAllow(this, null, V.requirePassDefault)
-					: new ResultDeny(DenyReason.DISABLED_REGION, this, InquiryType.OUT_OF_SCOPE, V.requireFailDefault, true);
+					ResultAllow.of(this, null, V.requirePassDefault)
+					: ResultDeny.of(DenyReason.DISABLED_REGION, this, InquiryType.OUT_OF_SCOPE, V.requireFailDefault, true);
 		}
 		return checkFlightRequirements(u, island);
 	}
@@ -451,7 +553,7 @@ public abstract class SkyblockHook extends TerritoryHook {
 		Console.debug("", "--- SkyblockHook check flight requirements B ---");
 		if (!isEnabled()) {
 			Console.debug("--|!!!> Hook is not enabled. Returning allowed flight!");
-			return new ResultAllow(this, InquiryType.OUT_OF_SCOPE, V.requirePassDefault);
+			return ResultAllow.of(this, InquiryType.OUT_OF_SCOPE, V.requirePassDefault);
 		}
 		return checkRoleRequirements(u, island);
 	}
@@ -468,12 +570,13 @@ public abstract class SkyblockHook extends TerritoryHook {
 		if (V.debug) {
 			Console.debug("", "--- SkyblockHook check role requirements ---", "--| Players Role: " + role, "--| Can role fly: " + settings.canFly(role));	
 		}
-		return !settings.canFly(role) ? new ResultDeny(DenyReason.DISABLED_REGION, this, InquiryType.OUT_OF_SCOPE,
-				roleDenied.replaceAll("\\{ROLE}", role), true) :
-			(hasRequirement(SkyblockRequirementType.ISLAND_ROLE, role)
-					? runRequirement(getRequirement(SkyblockRequirementType.ISLAND_ROLE, role), island, u)
-							.setInquiryType(InquiryType.OUT_OF_SCOPE)
-					: new ResultAllow(this, null, V.requirePassDefault));
+		if (!settings.canFly(role)) {
+			return ResultDeny.of(DenyReason.DISABLED_REGION, this, InquiryType.OUT_OF_SCOPE,
+					roleDenied.replaceAll("\\{ROLE}", role), true);
+		}
+		SkyblockRequirement requirement = getRequirement(SkyblockRequirementType.ISLAND_ROLE, role);
+		return requirement != null ? runRequirement(requirement, island, u).withInquiryType(InquiryType.OUT_OF_SCOPE)
+				: ResultAllow.of(this, null, V.requirePassDefault);
 	}
 	
 	/**
@@ -484,13 +587,21 @@ public abstract class SkyblockHook extends TerritoryHook {
 	 * @return The flight result.
 	 */
 	public FlightResult runRequirement(SkyblockRequirement ir, IslandWrapper island, UUID u) {
+		FlightResult result = outcomes.get(u, ir, island);
+		if (result == null) {
+			outcomes.put(u, ir, island, result = evaluateRequirement(ir, island, u));
+		}
+		return result;
+	}
+	
+	private FlightResult evaluateRequirement(SkyblockRequirement ir, IslandWrapper island, UUID u) {
 		if (V.debug) {Console.debug("", "----- Running island flight requirement -----","--| Name: " + ir.getName(),"--| player level: " + ir.getPlayerLevel(),"--| owner level: " + ir.getOwnerLevel());}
 		Console.debug("--| Players level: " + getIslandLevel(u));
 		if (ir.getPlayerLevel() > 0 && ir.getPlayerLevel() > getIslandLevel(u)) {
 			if (V.debug) {
 				Console.debug("--|> Fail island level: " + ir.getPlayerLevel() + " / " + getIslandLevel(u), "-----End flight requirements-----", "");
 			}
-			return new ResultDeny(DenyReason.REQUIREMENT, this, null, requireLevelSelf
+			return ResultDeny.of(DenyReason.REQUIREMENT, this, null, requireLevelSelf
 					.replaceAll("\\{LEVEL}", getFormattedIslandLevel(ir.getPlayerLevel()))
 					.replaceAll("\\{ROLE}", ir.getName()), true);
 		}
@@ -499,7 +610,7 @@ public abstract class SkyblockHook extends TerritoryHook {
 			if (V.debug) {
 				Console.debug("--|> Fail island level: " + ir.getOwnerLevel() + " / " + getIslandLevel(getIslandOwner(island)), "-----End flight requirements-----", "");	
 			}
-			return new ResultDeny(DenyReason.REQUIREMENT, this, null, requireLevelOther
+			return ResultDeny.of(DenyReason.REQUIREMENT, this, null, requireLevelOther
 					.replaceAll("\\{LEVEL}", getFormattedIslandLevel(ir.getOwnerLevel()))
 					.replaceAll("\\{ROLE}", ir.getName()), true);
 		}
@@ -509,7 +620,7 @@ public abstract class SkyblockHook extends TerritoryHook {
 				if (V.debug) {
 					Console.debug("--|> Fail island challenge: " + challenge, "-----End flight requirements-----", "");	
 				}
-				return new ResultDeny(DenyReason.REQUIREMENT, this, null, requireChallengeSelf
+				return ResultDeny.of(DenyReason.REQUIREMENT, this, null, requireChallengeSelf
 						.replaceAll("\\{CHALLENGE}", getChallengeName(challenge))
 						.replaceAll("\\{COMPLETIONS}", String.valueOf(challenge.getRequiredCompletions()))
 						.replaceAll("\\{PROGRESS}", String.valueOf(challenge.getRequiredProgress()))
@@ -521,59 +632,65 @@ public abstract class SkyblockHook extends TerritoryHook {
 				if (V.debug) {
 					Console.debug("--|> Fail island challenge | island owner: " + challenge, "-----End flight requirements-----", "");	
 				}
-				return new ResultDeny(DenyReason.REQUIREMENT, this, null, requireChallengeOther
+				return ResultDeny.of(DenyReason.REQUIREMENT, this, null, requireChallengeOther
 						.replaceAll("\\{CHALLENGE}", getChallengeName(challenge))
 						.replaceAll("\\{COMPLETIONS}", String.valueOf(challenge.getRequiredCompletions()))
 						.replaceAll("\\{PROGRESS}", String.valueOf(challenge.getRequiredProgress()))
 						.replaceAll("\\{ROLE}", ir.getName()), true);
 			}
 		}	
-		return new ResultAllow(this, null, V.requirePassDefault);
+		return ResultAllow.of(this, null, V.requirePassDefault);
 	}
 	
 	@Override
 	public FlightResult handleFlightInquiry(FlightUser user, World world) {
-		if (!isEnabled() || world == null || !hasRequirement(SkyblockRequirementType.WORLD, world.getName())) {
-			return new ResultAllow(this, InquiryType.WORLD, V.requirePassDefault);
+		SkyblockRequirement requirement = world == null ? null : getRequirement(SkyblockRequirementType.WORLD, world.getName());
+		if (!isEnabled() || requirement == null) {
+			return ResultAllow.of(this, InquiryType.WORLD, V.requirePassDefault);
 		}
 		UUID u = user.getPlayer().getUniqueId();
 		IslandWrapper homeIsland = getTeamIsland(u);
 		if (homeIsland == null) {
-			return new ResultDeny(DenyReason.REQUIREMENT, this, InquiryType.WORLD, requireIsland, true);
+			return ResultDeny.of(DenyReason.REQUIREMENT, this, InquiryType.WORLD, requireIsland, true);
 		}
-		return runRequirement(getRequirement(SkyblockRequirementType.WORLD, world.getName()), homeIsland, u)
-				.setInquiryType(InquiryType.WORLD);
+		return runRequirement(requirement, homeIsland, u)
+				.withInquiryType(InquiryType.WORLD);
 	}
 
 	@Override
 	public FlightResult handleFlightInquiry(FlightUser user, CompatRegion r) {
-		if (!isEnabled() || r == null || !hasRequirement(SkyblockRequirementType.REGION, r.getId())) {
-			return new ResultAllow(this, InquiryType.REGION, V.requirePassDefault);
+		SkyblockRequirement requirement = r == null ? null : getRequirement(SkyblockRequirementType.REGION, r.getId());
+		if (!isEnabled() || requirement == null) {
+			return ResultAllow.of(this, InquiryType.REGION, V.requirePassDefault);
 		}
 		UUID u = user.getPlayer().getUniqueId();
 		IslandWrapper homeIsland = getTeamIsland(u);
 		if (homeIsland == null) {
-			return new ResultDeny(DenyReason.REQUIREMENT, this, InquiryType.REGION, requireIsland, true);
+			return ResultDeny.of(DenyReason.REQUIREMENT, this, InquiryType.REGION, requireIsland, true);
 		}
-		return runRequirement(getRequirement(SkyblockRequirementType.REGION, r.getId()), homeIsland, u)
-				.setInquiryType(InquiryType.REGION);
+		return runRequirement(requirement, homeIsland, u)
+				.withInquiryType(InquiryType.REGION);
 	}
 	
 	@Override
 	public FlightResult handleFlightInquiry(FlightUser user, CompatRegion[] regions) {
 		if (!isEnabled() || regions == null || regions.length == 0 || !hasRequirement(SkyblockRequirementType.REGION)) {
-			return new ResultAllow(this, InquiryType.REGION, V.requirePassDefault);
+			return ResultAllow.of(this, InquiryType.REGION, V.requirePassDefault);
 		}
 		
 		UUID u = user.getPlayer().getUniqueId();
-		IslandWrapper homeIsland = getTeamIsland(u);
-		for (SkyblockRequirement rq: getRequirements(regions)) {
+		for (CompatRegion region: regions) {
+			SkyblockRequirement rq = getRequirement(SkyblockRequirementType.REGION, region.getId());
+			if (rq == null) {
+				continue;
+			}
+			IslandWrapper homeIsland = getTeamIsland(u);
 			if (homeIsland == null) {
-				return new ResultDeny(DenyReason.REQUIREMENT, this, InquiryType.REGION, requireIsland, true);
+				return ResultDeny.of(DenyReason.REQUIREMENT, this, InquiryType.REGION, requireIsland, true);
 			}
-			return runRequirement(rq, homeIsland, u).setInquiryType(InquiryType.REGION);
+			return runRequirement(rq, homeIsland, u).withInquiryType(InquiryType.REGION);
 		}
-		return new ResultAllow(this, InquiryType.REGION, V.requirePassDefault);
+		return ResultAllow.of(this, InquiryType.REGION, V.requirePassDefault);
 	}
 	
 	@Override
@@ -670,7 +787,20 @@ public abstract class SkyblockHook extends TerritoryHook {
 	 * @param loc The location.
 	 * @return The island at the location, null if there isn't one.
 	 */
-	public abstract IslandWrapper getIslandAt(Location loc);
+	public IslandWrapper getIslandAt(Location loc) {
+		if (!gridEnabled) {
+			return lookupIslandAt(loc);
+		}
+		Object rawIsland = isCachedIslandWorld(loc) ? grid.getIslandAt(loc.getBlockX(), loc.getBlockZ()) : null;
+		return rawIsland == null ? null : getIslandWrapper(rawIsland);
+	}
+	
+	/**
+	 * Ask the skyblock plugin for the island at a location, use getIslandAt which checks the island grid first.
+	 * @param loc The location.
+	 * @return The island at the location, null if there isn't one.
+	 */
+	public abstract IslandWrapper lookupIslandAt(Location loc);
 
 	@Override
 	public TerritoryWrapper getTerritoryAt(Location loc) {
@@ -784,6 +914,9 @@ public abstract class SkyblockHook extends TerritoryHook {
 	
 	@Override
 	public boolean isInTerritory(TerritoryWrapper territory, Location loc) {
+		if (gridEnabled && grid.isIndexed(territory.getRawTerritory())) {
+			return isCachedIslandWorld(loc) && grid.isInIsland(territory.getRawTerritory(), loc.getBlockX(), loc.getBlockZ());
+		}
 		return isInIsland((IslandWrapper) territory, loc);
 	}
 	
@@ -1,6 +1,7 @@
 package com.moneybags.tempfly.hook.skyblock.plugins;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -13,8 +14,11 @@ import org.bukkit.event.Listener;
 
 import com.bgsoftware.superiorskyblock.api.SuperiorSkyblock;
 import com.bgsoftware.superiorskyblock.api.SuperiorSkyblockAPI;
+import com.bgsoftware.superiorskyblock.api.events.IslandCreateEvent;
+import com.bgsoftware.superiorskyblock.api.events.IslandDisbandEvent;
 import com.bgsoftware.superiorskyblock.api.events.IslandEnterEvent;
 import com.bgsoftware.superiorskyblock.api.events.IslandLeaveEvent;
+import com.bgsoftware.superiorskyblock.api.events.IslandUpgradeEvent;
 import com.bgsoftware.superiorskyblock.api.events.IslandWorthUpdateEvent;
 import com.bgsoftware.superiorskyblock.api.events.MissionCompleteEvent;
 import com.bgsoftware.superiorskyblock.api.island.Island;
@@ -39,6 +43,8 @@ public class SuperiorHook extends SkyblockHook implements Listener {
 	
 	@EventHandler (priority = EventPriority.MONITOR, ignoreCancelled = true)
 	public void onEnter(IslandEnterEvent e) {
+		// Keep the bounds fresh in case an admin resized the island without an event.
+		indexIsland(e.getIsland());
 		Player player = Bukkit.getPlayer(e.getPlayer().getUniqueId());
 		super.onIslandEnter(player, e.getIsland(), player.getLocation());
 	}
@@ -54,6 +60,25 @@ public class SuperiorHook extends SkyblockHook implements Listener {
 		onIslandLevelChange(getIslandWrapper(island));
 	}
 	
+	@EventHandler (priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onCreate(IslandCreateEvent e) {
+		Island island = e.getIsland();
+		// The island is not placed on the grid until after the event.
+		Bukkit.getScheduler().runTask(tempfly, () -> indexIsland(island));
+	}
+	
+	@EventHandler (priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onDisband(IslandDisbandEvent e) {
+		unindexIsland(e.getIsland());
+	}
+	
+	@EventHandler (priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onUpgrade(IslandUpgradeEvent e) {
+		Island island = e.getIsland();
+		// Upgrades may change the island size, which is applied after the event.
+		Bukkit.getScheduler().runTask(tempfly, () -> indexIsland(island));
+	}
+	
 	@EventHandler (priority = EventPriority.MONITOR, ignoreCancelled = true)
 	public void onMission(MissionCompleteEvent e) {
 		super.onChallengeComplete(Bukkit.getPlayer(e.getPlayer().getUniqueId()));
@@ -120,11 +145,26 @@ public class SuperiorHook extends SkyblockHook implements Listener {
 	}
 
 	@Override
-	public IslandWrapper getIslandAt(Location loc) {
+	public IslandWrapper lookupIslandAt(Location loc) {
 		Island island = superior.getGrid().getIslandAt(loc);
 		return island == null ? null : getIslandWrapper(island);
 	}
 
+	@Override
+	protected Collection<?> getAllIslands() {
+		return superior.getGrid().getIslands();
+	}
+	
+	@Override
+	protected int[] getIslandBounds(Object rawIsland) {
+		Island is = (Island) rawIsland;
+		Location min = is.getMinimum(), max = is.getMaximum();
+		if (min == null || max == null) {
+			return null;
+		}
+		return new int[] {min.getBlockX(), min.getBlockZ(), max.getBlockX(), max.getBlockZ()};
+	}
+	
 	@Override
 	public boolean isIslandWorld(Location loc) {
 		return superior.getGrid().isIslandsWorld(loc.getWorld());
@@ -0,0 +1,57 @@
+package com.moneybags.tempfly.time;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import com.moneybags.tempfly.time.TimeManager.Placeholder;
+
+/**
+ * Holds the last rendered value of each time placeholder for a single user.
+ * Scoreboard and tab plugins request placeholders many times a tick, but the value can only
+ * change when the users whole second balance or infinite flight changes, so anything in between is a map hit.
+ * PlaceholderAPI may request placeholders from any thread.
+ */
+public class PlaceholderCache {
+
+	private final Map<Placeholder, Entry> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * Get the cached value of a placeholder, rendering it if the cached one is stale.
+	 * @param type The placeholder
+	 * @param second The users time in whole seconds
+	 * @param infinite Whether the user currently has infinite flight
+	 * @param render Renders the placeholder if it is not cached
+	 * @return The placeholder value
+	 */
+	public String get(Placeholder type, long second, boolean infinite, Supplier<String> render) {
+		Entry entry = entries.get(type);
+		if (entry != null && entry.second == second && entry.infinite == infinite) {
+			return entry.value;
+		}
+		String value = render.get();
+		entries.put(type, new Entry(second, infinite, value));
+		return value;
+	}
+
+	/**
+	 * Clear all cached values, called when the users time is changed or the lang is reloaded.
+	 */
+	public void invalidate() {
+		entries.clear();
+	}
+
+	private static class Entry {
+
+		private final long second;
+		private final boolean infinite;
+		private final String value;
+
+		private Entry(long second, boolean infinite, String value) {
+			this.second = second;
+			this.infinite = infinite;
+			this.value = value;
+		}
+	}
+
+}
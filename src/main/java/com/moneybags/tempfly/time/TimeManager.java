@@ -1,8 +1,10 @@
 package com.moneybags.tempfly.time;
 
+import java.util.Map;
 import java.util.UUID;
-import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
@@ -11,27 +13,40 @@ import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import com.moneybags.tempfly.TempFly;
 import com.moneybags.tempfly.event.FlightUserInitializedEvent;
+import com.moneybags.tempfly.fly.FlightManager;
 import com.moneybags.tempfly.user.FlightUser;
 import com.moneybags.tempfly.util.Console;
 import com.moneybags.tempfly.util.DailyDate;
+import com.moneybags.tempfly.util.MessageTemplate;
 import com.moneybags.tempfly.util.U;
 import com.moneybags.tempfly.util.V;
 import com.moneybags.tempfly.util.data.DataBridge;
 import com.moneybags.tempfly.util.data.DataPointer;
+import com.moneybags.tempfly.util.data.Reloadable;
 
 import net.milkbowl.vault.permission.Permission;
 
 import com.moneybags.tempfly.util.data.DataBridge.DataValue;
 
-public class TimeManager implements Listener {
+public class TimeManager implements Listener, Reloadable {
 
 	private TempFly tempfly;
 	
+	// How long the max time of an offline player is remembered.
+	private static final long OFFLINE_EXPIRE = 60000;
+	private final Map<UUID, OfflineMaxTime> offlineMaxTimes = new ConcurrentHashMap<>();
+	
 	public TimeManager(TempFly tempfly) {
 		this.tempfly = tempfly;
 		tempfly.getServer().getPluginManager().registerEvents(this, tempfly);
 	}
 	
+	@Override
+	public void onTempflyReload() {
+		// The max time groups may have changed.
+		offlineMaxTimes.clear();
+	}
+	
 	/**
 	 * Async
 	 * 
@@ -148,54 +163,63 @@ public class TimeManager implements Listener {
 	public double getMaxTime(UUID u) {
 		Console.debug("-- Get max time --");
 		Player p = Bukkit.getPlayer(u);
-		double highest = 0;
-		boolean hasGroup = false;
 		if (p != null && p.isOnline()) {
 			Console.debug("--| Player is online...");
-			for (Entry<String, Double> group: V.maxTimeGroups.entrySet()) {
-				double current = group.getValue();
-				// If the group is less than the highest found so far continue.
-				if (current < highest && current > -1) {
-					continue;
-				}
-				if (p.hasPermission("tempfly.max." + group.getKey())) {
-					Console.debug("--| Player has group: " + group.getKey() + " | " + group.getValue());
-					hasGroup = true;
-					if (current == -1) {
-						return current;
-					} else {
-						highest = current;
-					}
-				}
-			}
-		} else {
-			Console.debug("--| Player is offline...");
-			if (!tempfly.getHookManager().hasPermissions()) {
-				Console.debug("--|> No vault permissions, We cannot check max time!");
-				// We are returning -999 to indicate something is wrong and we cannot check the players max balance.
-				// In this case it is because the server does not have Vault and i can't check the offline players permissions.
-				return -999;
+			FlightManager manager = tempfly.getFlightManager();
+			FlightUser user = manager.hasUser(p) ? manager.getUser(p) : null;
+			return user != null ? user.getPermissions().getMaxTime() : resolveMaxTime(p::hasPermission);
+		}
+		Console.debug("--| Player is offline...");
+		if (!tempfly.getHookManager().hasPermissions()) {
+			Console.debug("--|> No vault permissions, We cannot check max time!");
+			// We are returning -999 to indicate something is wrong and we cannot check the players max balance.
+			// In this case it is because the server does not have Vault and i can't check the offline players permissions.
+			return -999;
+		}
+		// Vault lookups for offline players can hit the permission plugins database, remember them for a while.
+		OfflineMaxTime cached = offlineMaxTimes.get(u);
+		long now = System.currentTimeMillis();
+		if (cached != null) {
+			if (now < cached.expires) {
+				return cached.maxTime;
 			}
-			OfflinePlayer op = Bukkit.getOfflinePlayer(u);
-			Permission perms = tempfly.getHookManager().getPermissions();
-			for (Entry<String, Double> group: V.maxTimeGroups.entrySet()) {
-				double current = group.getValue();
-				if (current < highest && current > -1) {
-					continue;
-				}
-				if (op.isOp() || perms.playerHas(Bukkit.getWorlds().get(0).getName(), op, "tempfly.max." + group.getKey())) {
-					Console.debug("--| Player has group: " + group.getKey() + " | " + group.getValue());
-					hasGroup = true;
-					if (current == -1) {
-						return current;
-					} else {
-						highest = current;
-					}
-				}
+			offlineMaxTimes.remove(u, cached);
+		}
+		OfflinePlayer op = Bukkit.getOfflinePlayer(u);
+		Permission perms = tempfly.getHookManager().getPermissions();
+		String world = Bukkit.getWorlds().get(0).getName();
+		double maxTime = op.isOp() && V.maxTimeNodes.length > 0 ? V.maxTimeAmounts[0]
+				: resolveMaxTime(node -> perms.playerHas(world, op, node));
+		// Drop the other players that have expired so the map does not keep every player ever looked up.
+		offlineMaxTimes.values().removeIf(entry -> now >= entry.expires);
+		offlineMaxTimes.put(u, new OfflineMaxTime(maxTime, now + OFFLINE_EXPIRE));
+		Console.debug("--|> Final value: " + maxTime);
+		return maxTime;
+	}
+	
+	/**
+	 * Find the first max time group a player has, the groups are sorted so it is the one that applies.
+	 * @param permission Checks whether the player has a permission node.
+	 * @return The max time of the group, or the base max time if the player has none.
+	 */
+	public static double resolveMaxTime(Predicate<String> permission) {
+		for (int i = 0; i < V.maxTimeNodes.length; i++) {
+			if (permission.test(V.maxTimeNodes[i])) {
+				return V.maxTimeAmounts[i];
 			}
 		}
-		Console.debug("--|> Final value: " + (hasGroup ? highest : V.maxTimeBase));
-		return hasGroup ? highest : V.maxTimeBase;
+		return V.maxTimeBase;
+	}
+	
+	private static class OfflineMaxTime {
+		
+		private final double maxTime;
+		private final long expires;
+		
+		private OfflineMaxTime(double maxTime, long expires) {
+			this.maxTime = maxTime;
+			this.expires = expires;
+		}
 	}
 	
 	
@@ -267,9 +291,15 @@ public class TimeManager implements Listener {
 			bridge.stageChange(DataPointer.of(DataValue.PLAYER_DAILY_BONUS, p.getUniqueId().toString()), sys);
 		} else if (V.dailyBonus.size() > 0) {
 			Console.debug("--| Using permission based bonus...");
-			for (Entry<String, Double> entry: V.dailyBonus.entrySet()) {
-				if (p.hasPermission("tempfly.bonus." + entry.getKey())) {
-					bonus += entry.getValue();
+			FlightManager manager = tempfly.getFlightManager();
+			FlightUser user = manager.hasUser(p) ? manager.getUser(p) : null;
+			if (user != null) {
+				bonus = user.getPermissions().getDailyBonus();
+			} else {
+				for (int i = 0; i < V.dailyBonusNodes.length; i++) {
+					if (p.hasPermission(V.dailyBonusNodes[i])) {
+						bonus += V.dailyBonusAmounts[i];
+					}
 				}
 			}
 			bonus = maxTime > -1 && ((currentTime + bonus) > maxTime) ? maxTime - currentTime : bonus;
@@ -283,41 +313,23 @@ public class TimeManager implements Listener {
 		}
 	}
 	
+	/**
+	 * Replace the time placeholders in a message.
+	 * Messages that are sent often should be compiled once and passed to regexString(MessageTemplate, double) instead.
+	 * @param s The message
+	 * @param seconds The time
+	 * @return The message with the time placeholders replaced.
+	 */
 	public String regexString(String s, double seconds) {
-		//We dont care about the decimal here, it is only used internally for relative time regions.
-		long
-		days = formatTime(TimeUnit.DAYS, Math.ceil(seconds)),
-		hours = formatTime(TimeUnit.HOURS, Math.ceil(seconds)),
-		minutes = formatTime(TimeUnit.MINUTES, Math.ceil(seconds)),
-		secs = formatTime(TimeUnit.SECONDS, Math.ceil(seconds));
-		
-		StringBuilder sb = new StringBuilder();
-		if (s.contains("{FORMATTED_TIME}")) {
-			boolean addSpace = false;
-			if (days > 0) {
-				regexA(sb, days, V.unitDays, false);
-				addSpace = true;
-			} if (hours > 0) {
-				regexA(sb, hours, V.unitHours, addSpace);
-				addSpace = true;
-			} if (minutes > 0) { 
-				regexA(sb, minutes, V.unitMinutes, addSpace);
-				addSpace = true;
-			} if (secs > 0 || sb.length() == 0) {
-				regexA(sb, secs, V.unitSeconds, addSpace);
-			}
-		}
-		return s.replaceAll("\\{FORMATTED_TIME}", sb.toString())
-				.replaceAll("\\{DAYS}", String.valueOf(days))
-				.replaceAll("\\{HOURS}", String.valueOf(hours))
-				.replaceAll("\\{MINUTES}", String.valueOf(minutes))
-				.replaceAll("\\{SECONDS}", String.valueOf(secs));
+		return MessageTemplate.compile(s).render(seconds);
 	}
 	
-	private void regexA(StringBuilder sb, long quantity, String unit, boolean addSpace) {
-		sb.append((addSpace ? " " : "") + V.timeFormat
-				.replaceAll("\\{QUANTITY}", String.valueOf(quantity))
-				.replaceAll("\\{UNIT}", unit));
+	public String regexString(MessageTemplate template, double seconds) {
+		return template.render(seconds);
+	}
+	
+	public String regexString(MessageTemplate template, double seconds, String player, String oldTag) {
+		return template.render(seconds, player, oldTag);
 	}
 	
 	public long formatTime(TimeUnit unit, double seconds) {
@@ -336,11 +348,17 @@ public class TimeManager implements Listener {
 	}
 	
 	public String getPlaceHolder(Player p, Placeholder type) {
-		double supply = getTime(p.getUniqueId());
 		FlightUser user = tempfly.getFlightManager().getUser(p);
 		if (user == null) {
 			return "broken message";
 		}
+		double supply = user.getTime();
+		// Infinite flight only changes the formatted placeholder, don't bother checking permissions for the rest.
+		boolean infinite = type == Placeholder.TIME_FORMATTED && user.hasInfiniteFlight();
+		return user.getPlaceholderCache().get(type, (long) supply, infinite, () -> renderPlaceHolder(type, supply, infinite));
+	}
+	
+	private String renderPlaceHolder(Placeholder type, double supply, boolean infinite) {
 		switch (type) {
 		case TIME_FORMATTED:
 		{
@@ -351,17 +369,17 @@ public class TimeManager implements Listener {
 			seconds = formatTime(TimeUnit.SECONDS, supply);
 			
 			StringBuilder sb = new StringBuilder();
-			if (user.hasInfiniteFlight()) {
+			if (infinite) {
 				sb.append(V.infinity);
 			} else {
 				if (days > 0) 
-					sb.append(V.fbDays.replaceAll("\\{DAYS}", String.valueOf(days)));
+					V.fbDaysTemplate.appendTo(sb, days, hours, minutes, seconds, null, null);
 				if (hours > 0) 
-					sb.append(V.fbHours.replaceAll("\\{HOURS}", String.valueOf(hours)));
+					V.fbHoursTemplate.appendTo(sb, days, hours, minutes, seconds, null, null);
 				if (minutes > 0) 
-					sb.append(V.fbMinutes.replaceAll("\\{MINUTES}", String.valueOf(minutes)));
+					V.fbMinutesTemplate.appendTo(sb, days, hours, minutes, seconds, null, null);
 				if (seconds > 0 || sb.length() == 0) 
-					sb.append(V.fbSeconds.replaceAll("\\{SECONDS}", String.valueOf(seconds)));
+					V.fbSecondsTemplate.appendTo(sb, days, hours, minutes, seconds, null, null);
 			}
 			return sb.toString();
 		}
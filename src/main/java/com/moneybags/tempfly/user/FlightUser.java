@@ -13,20 +13,22 @@ import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.entity.Player;
 import org.bukkit.metadata.MetadataValue;
-import org.bukkit.permissions.PermissionAttachmentInfo;
 import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.scheduler.BukkitTask;
 
 import com.moneybags.tempfly.aesthetic.ActionBarAPI;
 import com.moneybags.tempfly.aesthetic.TitleAPI;
 import com.moneybags.tempfly.aesthetic.particle.Particles;
+import com.moneybags.tempfly.aesthetic.particle.Trail;
 import com.moneybags.tempfly.environment.FlightEnvironment;
-import com.moneybags.tempfly.environment.RelativeTimeRegion;
+import com.moneybags.tempfly.environment.FlightPolicy;
 import com.moneybags.tempfly.fly.FlightManager;
+import com.moneybags.tempfly.fly.InquiryCache;
 import com.moneybags.tempfly.fly.RequirementProvider;
 import com.moneybags.tempfly.fly.RequirementProvider.InquiryType;
 import com.moneybags.tempfly.fly.result.FlightResult;
 import com.moneybags.tempfly.hook.region.CompatRegion;
+import com.moneybags.tempfly.time.PlaceholderCache;
 import com.moneybags.tempfly.time.TimeManager;
 import com.moneybags.tempfly.util.Console;
 import com.moneybags.tempfly.util.U;
@@ -43,6 +45,9 @@ public class FlightUser {
 	private final TimeManager timeManager;
 	private final Player p;
 	private final UserEnvironment environment;
+	private final PlaceholderCache placeholders = new PlaceholderCache();
+	private final InquiryCache inquiries = new InquiryCache();
+	private final PermissionSnapshot permissions;
 	
 	//A list of reasons the player cannot currently fly.
 	private Map<RequirementProvider, Map<InquiryType, FlightResult>> requirements = new ConcurrentHashMap<>();
@@ -55,6 +60,11 @@ public class FlightUser {
 	private String
 	listName, tagName, particle;
 	
+	// The particle trail resolved once from its name so the particle task doesn't have to.
+	private Trail trail;
+	// Reused by the particle task, only ever touched on the main thread.
+	private final Location trailLocation = new Location(null, 0, 0, 0);
+	
 	private boolean
 	enabled, autoEnable,
 	infinite = true,
@@ -79,8 +89,10 @@ public class FlightUser {
 		this.timeManager = manager.getTempFly().getTimeManager();
 		
 		this.p = p;
+		this.permissions = new PermissionSnapshot(p);
 		this.time = time;
 		this.particle = particle;
+		this.trail = Particles.compileTrail(particle);
 		this.infinite = infinite;
 		this.bypass = bypass;
 		this.selectedSpeed = selectedSpeed;
@@ -164,12 +176,25 @@ public class FlightUser {
 		return p;
 	}
 	
+	public PlaceholderCache getPlaceholderCache() {
+		return placeholders;
+	}
+	
+	public InquiryCache getInquiryCache() {
+		return inquiries;
+	}
+	
+	public PermissionSnapshot getPermissions() {
+		return permissions;
+	}
+	
 	public void setTime(double time) {
 		if (time <= 0) {
 			time = 0;
 		}
 		double oldTime = this.time;
 		this.time = time;
+		placeholders.invalidate();
 		manager.getTempFly().getDataBridge().stageChange(DataPointer.of(DataValue.PLAYER_TIME, p.getUniqueId().toString()), time);
 		if ((timer instanceof FlightTimer) 
 				&& !hasInfiniteFlight()
@@ -226,7 +251,7 @@ public class FlightUser {
 	 * @return true if the user has infinite flight and it is enabled.
 	 */
 	public boolean hasInfiniteFlight() {
-		return (p.hasPermission("tempfly.infinite") && infinite) || environment.hasInfiniteFlight();
+		return (infinite && permissions.hasInfinite()) || environment.hasInfiniteFlight();
 	}
 	
 	/**
@@ -250,7 +275,7 @@ public class FlightUser {
 	 * @return true if the user has requirement bypass and it is enabled.
 	 */
 	public boolean hasRequirementBypass() {
-		return p.hasPermission("tempfly.bypass") && bypass;
+		return bypass && permissions.hasBypass();
 	}
 	
 	/**
@@ -432,7 +457,8 @@ public class FlightUser {
 	}
 	
 	public boolean hasFlightRequirement(RequirementProvider requirement, InquiryType type) {
-		return requirements.getOrDefault(requirement, new HashMap<>()).containsKey(type);
+		Map<InquiryType, FlightResult> types = requirements.get(requirement);
+		return types != null && types.containsKey(type);
 	}
 	
 	public boolean hasFlightRequirements() {
@@ -448,6 +474,7 @@ public class FlightUser {
 		}
 		types.put(type, failedResult);
 		this.requirements.put(requirement, types);
+		inquiries.invalidate(requirement);
 		if (enabled) {
 			autoEnable = true;
 		}
@@ -463,6 +490,7 @@ public class FlightUser {
 		if (V.debug) {Console.debug("", "---- Removing flight requirement from user ----", "--| Requirement: " + requirement.getClass().toGenericString(), "--| Requirements: " + requirements);}
 		Map<InquiryType, FlightResult> types = requirements.getOrDefault(requirement, new HashMap<>());
 		types.remove(type);
+		inquiries.invalidate(requirement);
 		if (types.size() == 0) {
 			this.requirements.remove(requirement);
 		} else {
@@ -480,11 +508,13 @@ public class FlightUser {
 	public boolean removeFlightRequirement(RequirementProvider requirement) {
 		if (V.debug) {Console.debug("", "---- Removing flight requirement from user ----", "--| Requirement: " + requirement.getClass().toGenericString(), "--| Requirements: " + requirements);}
 		this.requirements.remove(requirement);
+		inquiries.invalidate(requirement);
 		return !hasFlightRequirements();
 	}
 	
 	public void removeFlightRequirements() {
 		this.requirements.clear();
+		inquiries.invalidate();
 	}
 	
 	public void sendRequirementMessage() {
@@ -699,58 +729,58 @@ public class FlightUser {
 	 */
 	public void setTrail(String particle) {
 		this.particle = particle;
+		this.trail = Particles.compileTrail(particle);
 		manager.getTempFly().getDataBridge().stageChange(DataPointer.of(DataValue.PLAYER_TRAIL, p.getUniqueId().toString()), particle);
 	}
 	
-	public void playTrail() {
-		if (particle == null || particle.length() == 0) {return;}
+	/**
+	 * Display the users particle trail if they have one.
+	 * @return true if the trail was displayed
+	 */
+	public boolean playTrail() {
+		if (particle == null || particle.length() == 0) {return false;}
 		
 		if (p.getGameMode() == GameMode.SPECTATOR) {
-			return;
+			return false;
 		}
 		
 		if (V.hideVanish) {
 			for (MetadataValue meta : p.getMetadata("vanished")) {
 				if (meta.asBoolean()) {
-					return;
+					return false;
 				}
 			}
 		}
 		
 		
-		Particles.play(p.getLocation(), particle);
+		Particles.play(p.getLocation(trailLocation), trail);
+		return true;
 	}
 	
 	public String getListPlaceholder() {
-		return timeManager.regexString((p.isFlying() && hasFlightEnabled() ? V.listPlaceholderOn : V.listPlaceholderOff)
-				.replaceAll("\\{PLAYER}", p.getName())
-				.replaceAll("\\{OLD_TAG}", listName), time);
+		return timeManager.regexString(p.isFlying() && hasFlightEnabled() ? V.listPlaceholderOnTemplate : V.listPlaceholderOffTemplate,
+				time, p.getName(), listName);
 	}
 	
 	public String getTagPlaceholder() {
-		return timeManager.regexString((p.isFlying() && hasFlightEnabled() ? V.tagPlaceholderOn : V.tagPlaceholderOff)
-				.replaceAll("\\{PLAYER}", p.getName())
-				.replaceAll("\\{OLD_TAG}", tagName), time);
+		return timeManager.regexString(p.isFlying() && hasFlightEnabled() ? V.tagPlaceholderOnTemplate : V.tagPlaceholderOffTemplate,
+				time, p.getName(), tagName);
 	}
 	
 	private void updateList(boolean reset) {
 		if (!V.list) {return;}
 		p.setPlayerListName(!p.isFlying() || reset
-				? listName : timeManager.regexString(V.listName
-						.replaceAll("\\{PLAYER}", p.getName())
-						.replaceAll("\\{OLD_TAG}", tagName), time));
+				? listName : timeManager.regexString(V.listNameTemplate, time, p.getName(), tagName));
 	}
 	
 	private void updateName(boolean reset) {
 		if (!V.tag) {return;}
 		p.setDisplayName(!p.isFlying() || reset
-				? tagName : timeManager.regexString(V.tagName
-						.replaceAll("\\{PLAYER}", p.getName())
-						.replaceAll("\\{OLD_TAG}", tagName), time));
+				? tagName : timeManager.regexString(V.tagNameTemplate, time, p.getName(), tagName));
 	}
 	
 	public void doActionBar() {
-		ActionBarAPI.sendActionBar(p, timeManager.regexString(V.actionText, getTime()));
+		ActionBarAPI.queueActionBar(p, timeManager.regexString(V.actionTextTemplate, getTime()));
 	}
 	
 	
@@ -823,17 +853,18 @@ public class FlightUser {
 	
 	public float getMaxSpeed() {
 		Console.debug("get max speed 1");
-		CompatRegion[] regions = environment.getCurrentRegionSet();
+		CompatRegion[] regions = environment.getCurrentRegions().getRegions();
 		FlightEnvironment env = manager.getFlightEnvironment();
+		FlightPolicy policy = env.getPolicy(environment.getCurrentRegions());
 		
 		// Permissions for region speed take priority
 		float finSpeed = getMaxSpeed(regions);
 		if (finSpeed != -999) {
 			Console.debug("2: " + finSpeed);
 			return finSpeed;
-		} else if (env.hasMaxSpeed(regions)) {
-			Console.debug("4: " + env.getMaxSpeed(regions));
-			return env.getMaxSpeed(regions);
+		} else if (policy.hasMaxSpeed()) {
+			Console.debug("4: " + policy.getMaxSpeed(env.getDefaultSpeed()));
+			return policy.getMaxSpeed(env.getDefaultSpeed());
 		}
 		
 		// Permissions for world speed go next
@@ -852,53 +883,17 @@ public class FlightUser {
 	}
 	
 	public float getMaxSpeed(World world) {
-		return this.calculatePermissionSpeed("world." + world.getName(), "world.*");
+		return permissions.getWorldSpeed(world.getName());
 	}
 	
 	public float getMaxSpeed(CompatRegion[] regions) {
 		float permSpeed = -999;
 		for (CompatRegion region: regions) {
-			permSpeed = Math.max(calculatePermissionSpeed("region." + region.getId(), "region.*"), permSpeed);
-			Console.debug("--| Region: " + region.getId(), "--| Permission speed for this region is: " + permSpeed);
+			permSpeed = Math.max(permissions.getRegionSpeed(region.getId()), permSpeed);
 		}
 		return permSpeed;
 	}
 	
-	private float calculatePermissionSpeed(String permission, String wildcard) {
-		Console.debug("calc perm speed : " + permission);
-		float maxBase = -999;
-		
-		float maxFound = 0;
-		for (PermissionAttachmentInfo info: p.getEffectivePermissions()) {
-			String perm = info.getPermission();
-			if (perm.startsWith("tempfly.speed." + permission)
-					|| perm.startsWith("tempfly.speed." + wildcard)) {
-				Console.debug("found: " + perm);
-				String[] split = perm.split("\\.");
-				if (split.length < 5) {
-					Console.debug("less than 5");
-					continue;
-				}
-				String num = split[4];
-				if (split.length > 5) {
-					num = num.concat("." + split[5]);
-				}
-				num = num.replaceAll("\\[", "").replaceAll("\\]", "");
-				Console.debug(num);
-				try {
-					float found = Float.parseFloat(num);
-					maxFound = Math.max(found, maxFound);
-				} catch (Exception e) {}
-			}
-		}
-		if (maxFound > 0) {
-			maxBase = maxFound;
-		}
-		Console.debug("maxbase: " + maxBase);
-		
-		return maxBase;
-	}
-	
 	
 	/**
 	 * 
@@ -1013,18 +1008,14 @@ public class FlightUser {
 		private void executeTimer() {
 			if (time > 0) {
 				
-				double cost = 1;
-				for (RelativeTimeRegion rtr : environment.getRelativeTimeRegions()) {
-					cost *= rtr.getFactor();
-				}
-				time = time-cost;
+				time = time-environment.getRelativeTimeFactor();
 				if (time < 0) time = 0;
 				
 				manager.getTempFly().getDataBridge().stageChange(DataPointer.of(DataValue.PLAYER_TIME, p.getUniqueId().toString()), time);	
 				
 				if (V.warningTimes.contains((long)time)) {
-					TitleAPI.sendTitle(p, 15, 30, 15, timeManager.regexString(V.warningTitle, time),
-							timeManager.regexString(V.warningSubtitle, time));
+					TitleAPI.sendTitle(p, 15, 30, 15, timeManager.regexString(V.warningTitleTemplate, time),
+							timeManager.regexString(V.warningSubtitleTemplate, time));
 				}
 				if (V.actionBar) {doActionBar();}
 				
@@ -0,0 +1,178 @@
+package com.moneybags.tempfly.user;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.bukkit.entity.Player;
+import org.bukkit.permissions.PermissionAttachmentInfo;
+
+import com.moneybags.tempfly.time.TimeManager;
+import com.moneybags.tempfly.util.V;
+
+/**
+ * The permissions of a single user that tempfly checks over and over, read from the player once
+ * and kept until they are invalidated or go stale. This may be read from any thread.
+ * 
+ * Bukkit has no event for permission changes so the snapshot is retaken every REFRESH milliseconds,
+ * as well as when the user changes worlds and when tempfly reloads.
+ */
+public class PermissionSnapshot {
+
+	// How long a snapshot is trusted before the players permissions are read again.
+	private static final long REFRESH = 10000;
+	private static final String SPEED_NODE = "tempfly.speed.";
+	
+	private final Player p;
+	private volatile long taken;
+	
+	private boolean
+	infinite,
+	bypass;
+	
+	private double
+	maxTime,
+	dailyBonus;
+	
+	/*
+	 * Speed limits from tempfly.speed.<world|region>.<name>.<speed>, keyed by the lower case world name or region id.
+	 * The wildcards come from tempfly.speed.world.* and tempfly.speed.region.*, -999 if there is none.
+	 */
+	private Map<String, Float>
+	worldSpeeds = Collections.emptyMap(),
+	regionSpeeds = Collections.emptyMap();
+	private float
+	worldWildcard = -999,
+	regionWildcard = -999;
+	
+	public PermissionSnapshot(Player p) {
+		this.p = p;
+	}
+	
+	/**
+	 * @return true if the user has the permission tempfly.infinite
+	 */
+	public boolean hasInfinite() {
+		validate();
+		return infinite;
+	}
+	
+	/**
+	 * @return true if the user has the permission tempfly.bypass
+	 */
+	public boolean hasBypass() {
+		validate();
+		return bypass;
+	}
+	
+	/**
+	 * @return The max time of the highest max time group the user has, see TimeManager.getMaxTime()
+	 */
+	public double getMaxTime() {
+		validate();
+		return maxTime;
+	}
+	
+	/**
+	 * @return The sum of the daily bonus groups the user has.
+	 */
+	public double getDailyBonus() {
+		validate();
+		return dailyBonus;
+	}
+	
+	/**
+	 * Read the players permissions again the next time they are needed.
+	 */
+	public void invalidate() {
+		taken = 0;
+	}
+	
+	/**
+	 * @param world The name of the world
+	 * @return The highest speed the user has permission for in the world, -999 if there is none.
+	 */
+	public float getWorldSpeed(String world) {
+		validate();
+		return Math.max(worldSpeeds.getOrDefault(world.toLowerCase(), -999f), worldWildcard);
+	}
+	
+	/**
+	 * @param region The id of the region
+	 * @return The highest speed the user has permission for in the region, -999 if there is none.
+	 */
+	public float getRegionSpeed(String region) {
+		validate();
+		return Math.max(regionSpeeds.getOrDefault(region.toLowerCase(), -999f), regionWildcard);
+	}
+	
+	private void validate() {
+		if (System.currentTimeMillis() - taken > REFRESH) {
+			synchronized (this) {
+				long now = System.currentTimeMillis();
+				if (now - taken > REFRESH) {
+					take();
+					taken = now;
+				}
+			}
+		}
+	}
+	
+	private void take() {
+		infinite = p.hasPermission("tempfly.infinite");
+		bypass = p.hasPermission("tempfly.bypass");
+		maxTime = TimeManager.resolveMaxTime(p::hasPermission);
+		double bonus = 0;
+		for (int i = 0; i < V.dailyBonusNodes.length; i++) {
+			if (p.hasPermission(V.dailyBonusNodes[i])) {
+				bonus += V.dailyBonusAmounts[i];
+			}
+		}
+		dailyBonus = bonus;
+		
+		Map<String, Float> worldSpeeds = new HashMap<>(), regionSpeeds = new HashMap<>();
+		float worldWildcard = -999, regionWildcard = -999;
+		for (PermissionAttachmentInfo info : p.getEffectivePermissions()) {
+			String perm = info.getPermission();
+			if (!info.getValue() || !perm.startsWith(SPEED_NODE)) {
+				continue;
+			}
+			// <world|region>.<name>.<speed>[.<decimal>]
+			String[] split = perm.substring(SPEED_NODE.length()).split("\\.", 4);
+			if (split.length < 3) {
+				continue;
+			}
+			float speed = parseSpeed(split.length > 3 ? split[2] + "." + split[3] : split[2]);
+			if (speed <= 0) {
+				continue;
+			}
+			String name = split[1].toLowerCase();
+			if (split[0].equals("world")) {
+				if (name.equals("*")) {
+					worldWildcard = Math.max(worldWildcard, speed);
+				} else {
+					worldSpeeds.merge(name, speed, Math::max);
+				}
+			} else if (split[0].equals("region")) {
+				if (name.equals("*")) {
+					regionWildcard = Math.max(regionWildcard, speed);
+				} else {
+					regionSpeeds.merge(name, speed, Math::max);
+				}
+			}
+		}
+		this.worldSpeeds = worldSpeeds;
+		this.regionSpeeds = regionSpeeds;
+		this.worldWildcard = worldWildcard;
+		this.regionWildcard = regionWildcard;
+	}
+	
+	private static float parseSpeed(String num) {
+		try {
+			return Float.parseFloat(num.replace("[", "").replace("]", ""));
+		} catch (NumberFormatException e) {
+			return -999;
+		}
+	}
+	
+}
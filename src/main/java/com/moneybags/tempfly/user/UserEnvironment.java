@@ -1,15 +1,15 @@
 package com.moneybags.tempfly.user;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
 
 import org.bukkit.entity.Player;
 
 import com.moneybags.tempfly.environment.FlightEnvironment;
 import com.moneybags.tempfly.environment.RelativeTimeRegion;
+import com.moneybags.tempfly.hook.HookManager;
 import com.moneybags.tempfly.hook.region.CompatRegion;
+import com.moneybags.tempfly.hook.region.RegionSet;
 import com.moneybags.tempfly.util.Console;
 
 public class UserEnvironment {
@@ -19,23 +19,27 @@ public class UserEnvironment {
 	
 	private boolean freeFlight;
 	
-	private final List<CompatRegion> encompassing = new LinkedList<>();
+	private RegionSet encompassing = RegionSet.EMPTY;
 	
 	private final List<RelativeTimeRegion> rtRegions = new ArrayList<>();
 	private RelativeTimeRegion rtWorld;
+	// The factor of every relative time region and world the user is in multiplied together.
+	private double rtFactor = 1;
 	
 	public UserEnvironment(FlightUser user, Player p) {
 		Console.debug("--| Loading user environment...");
 		this.user = user;
 		this.environment = user.getFlightManager().getFlightEnvironment();
 		
-		encompassing.addAll(Arrays.asList(
-				user.getFlightManager().getTempFly().getHookManager().hasRegionProvider()
-				? user.getFlightManager().getTempFly().getHookManager().getRegionProvider().getApplicableRegions(user.getPlayer().getLocation())
-				: new CompatRegion[0]));
+		HookManager hooks = user.getFlightManager().getTempFly().getHookManager();
+		encompassing = hooks.hasRegionProvider()
+				? hooks.getRegionCache().getRegionSet(user.getPlayer().getLocation())
+				: RegionSet.EMPTY;
 		
 		StringBuilder builder = new StringBuilder();
-		encompassing.stream().forEach(rg -> builder.append(rg.getId() + ", "));
+		for (CompatRegion rg : encompassing.getRegions()) {
+			builder.append(rg.getId() + ", ");
+		}
 		Console.debug("--| Current regions: " + builder);
 		asessRtRegions();
 		asessRtWorld();
@@ -58,23 +62,28 @@ public class UserEnvironment {
 	
 	
 	public CompatRegion[] getCurrentRegionSet() {
-		return encompassing == null ? null : encompassing.toArray(new CompatRegion[encompassing.size()]);
+		return encompassing.getRegions().clone();
+	}
+	
+	/**
+	 * @return The set of regions the user is currently in.
+	 */
+	public RegionSet getCurrentRegions() {
+		return encompassing;
 	}
 	
 	public void updateCurrentRegionSet(CompatRegion[] regions) {
-		this.encompassing.clear();
-		this.encompassing.addAll(Arrays.asList(regions));
+		updateCurrentRegionSet(RegionSet.of(regions.clone()));
+	}
+	
+	public void updateCurrentRegionSet(RegionSet regions) {
+		this.encompassing = regions;
 		asessRtRegions();
 		asessInfiniteFlight();
 	}
 	
 	public boolean isInside(CompatRegion region) {
-		for (CompatRegion inside: encompassing) {
-			if (inside.equals(region)) {
-				return true;
-			}
-		}
-		return false;
+		return encompassing.contains(region);
 	}
 	
 	
@@ -88,48 +97,44 @@ public class UserEnvironment {
 	
 	
 	public RelativeTimeRegion[] getRelativeTimeRegions() {
-		List<RelativeTimeRegion> list = new LinkedList<>();
-		list.addAll(rtRegions);
+		List<RelativeTimeRegion> list = new ArrayList<>(rtRegions);
 		if (rtWorld != null) list.add(rtWorld);
 		return list.toArray(new RelativeTimeRegion[list.size()]);
 	}
+	
+	/**
+	 * The combined cost multiplier of all the relative time regions and the world the user is in.
+	 * This is only recalculated when the user changes regions or worlds so it is safe to call every second.
+	 * @return The amount of time the user loses for every second of flight.
+	 */
+	public double getRelativeTimeFactor() {
+		return rtFactor;
+	}
 
 	public void asessRtWorld() {
 		rtWorld = environment.getRelativeTime(user.getPlayer().getWorld());
+		calculateRtFactor();
 	}
 	
 	public void asessRtRegions() {
-		RelativeTimeRegion[] rtArray = user.getFlightManager().getFlightEnvironment().getRelativeTimeRegions();
-		if (rtArray.length == 0) {
-			return;
+		rtRegions.clear();
+		for (RelativeTimeRegion rt : environment.getPolicy(encompassing).getRelativeTime()) {
+			rtRegions.add(rt);
 		}
-		List<String> regions = new ArrayList<>();
-		for(CompatRegion r : encompassing) {
-			regions.add(r.getId());
-		}
-		for (RelativeTimeRegion rt : rtArray) {
-			String rtName = rt.getName();
-			if ((regions.contains(rtName)) && !(rtRegions.contains(rt))) {
-				rtRegions.add(rt);
-			} else if (!(regions.contains(rtName)) && (rtRegions.contains(rt))) {
-				rtRegions.remove(rt);	
-			}
+		calculateRtFactor();
+	}
+	
+	private void calculateRtFactor() {
+		double factor = rtWorld == null ? 1 : rtWorld.getFactor();
+		for (RelativeTimeRegion rt : rtRegions) {
+			factor *= rt.getFactor();
 		}
+		rtFactor = factor;
 	}
 	
 	public void asessInfiniteFlight() {
-		if (environment.isInfinite(user.getPlayer().getWorld())) {
-			freeFlight = true;
-			return;
-		}
-		
-		for (CompatRegion r: encompassing) {
-			if (environment.isInfinite(r)) {
-				freeFlight = true;
-				return;
-			}
-		}
-		freeFlight = false;
+		freeFlight = environment.isInfinite(user.getPlayer().getWorld())
+				|| environment.getPolicy(encompassing).isInfinite();
 	}
 	
 	public boolean hasInfiniteFlight() {
@@ -142,18 +147,14 @@ public class UserEnvironment {
 	 * @return True if the list is the same.
 	 */
 	public boolean checkIdenticalRegions(List<CompatRegion> regions) {
-		if (regions.size() != encompassing.size()) {
-			return false;
-		}
-		check:
-		for (CompatRegion check: regions) {
-			for (CompatRegion current: encompassing) {
-				if (current.equals(check)) {
-					continue check;
-				}
-			}
-			return false;
-		}
-		return true;
+		return checkIdenticalRegions(RegionSet.of(regions.toArray(new CompatRegion[regions.size()])));
+	}
+	
+	/**
+	 * @param regions The set of regions to check
+	 * @return True if the set contains the same regions the user is currently in.
+	 */
+	public boolean checkIdenticalRegions(RegionSet regions) {
+		return encompassing.equals(regions);
 	}
 }
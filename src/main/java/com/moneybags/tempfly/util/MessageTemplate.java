@@ -0,0 +1,228 @@
+package com.moneybags.tempfly.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A lang message that has been split into its literal text and placeholders ahead of time.
+ * Messages such as the action bar are rendered every second for every flyer, so instead of running
+ * a regex replace for each placeholder on every call the message is parsed once when the config loads
+ * and rendering is just appending the parts to a builder.
+ *
+ * Placeholders that are not recognized are left in the message untouched, as are recognized placeholders
+ * that were not given a value when rendering.
+ */
+public class MessageTemplate {
+
+	public static enum Token {
+		FORMATTED_TIME,
+		DAYS,
+		HOURS,
+		MINUTES,
+		SECONDS,
+		QUANTITY,
+		UNIT,
+		PLAYER,
+		OLD_TAG;
+
+		private final String placeholder = "{" + name() + "}";
+	}
+
+	private static final Map<String, Token> TOKENS = new HashMap<>();
+	static {
+		for (Token token : Token.values()) {
+			TOKENS.put(token.name(), token);
+		}
+	}
+
+	private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(StringBuilder::new);
+
+	private final String source;
+	// literals[i] comes before tokens[i], the last literal comes after the last token.
+	private final String[] literals;
+	private final Token[] tokens;
+
+	private MessageTemplate(String source, String[] literals, Token[] tokens) {
+		this.source = source;
+		this.literals = literals;
+		this.tokens = tokens;
+	}
+
+	/**
+	 * Parse a message into a template.
+	 * @param s The message
+	 * @return The compiled template.
+	 */
+	public static MessageTemplate compile(String s) {
+		if (s == null) {
+			s = "";
+		}
+		List<String> literals = new ArrayList<>();
+		List<Token> tokens = new ArrayList<>();
+		StringBuilder literal = new StringBuilder();
+		int index = 0;
+		while (index < s.length()) {
+			int open = s.indexOf('{', index);
+			int close = open < 0 ? -1 : s.indexOf('}', open);
+			if (open < 0 || close < 0) {
+				literal.append(s, index, s.length());
+				break;
+			}
+			Token token = TOKENS.get(s.substring(open + 1, close));
+			if (token == null) {
+				// Not one of ours, keep the brace and look for the next one.
+				literal.append(s, index, open + 1);
+				index = open + 1;
+				continue;
+			}
+			literal.append(s, index, open);
+			literals.add(literal.toString());
+			literal.setLength(0);
+			tokens.add(token);
+			index = close + 1;
+		}
+		literals.add(literal.toString());
+		return new MessageTemplate(s, literals.toArray(new String[literals.size()]), tokens.toArray(new Token[tokens.size()]));
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	public boolean hasToken(Token token) {
+		for (Token t : tokens) {
+			if (t == token) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Render the template with the time placeholders.
+	 * @param seconds The time in seconds, rounded up like the rest of the time messages.
+	 * @return The rendered message.
+	 */
+	public String render(double seconds) {
+		return render(seconds, null, null);
+	}
+
+	/**
+	 * Render the template with the time, {PLAYER} and {OLD_TAG} placeholders.
+	 * @param seconds The time in seconds, rounded up like the rest of the time messages.
+	 * @param player The name of the player or null to leave the placeholder alone.
+	 * @param oldTag The old tag or null to leave the placeholder alone.
+	 * @return The rendered message.
+	 */
+	public String render(double seconds, String player, String oldTag) {
+		//We dont care about the decimal here, it is only used internally for relative time regions.
+		long total = (long) Math.ceil(seconds);
+		return render(total / 86400, total % 86400 / 3600, total % 3600 / 60, total % 60, player, oldTag);
+	}
+
+	/**
+	 * Render the template with already split up time units. A negative unit leaves its placeholder alone.
+	 * @return The rendered message.
+	 */
+	public String render(long days, long hours, long minutes, long seconds, String player, String oldTag) {
+		if (tokens.length == 0) {
+			return literals[0];
+		}
+		StringBuilder sb = BUILDER.get();
+		sb.setLength(0);
+		append(sb, days, hours, minutes, seconds, null, null, player, oldTag);
+		return sb.toString();
+	}
+
+	/**
+	 * Append the rendered template to an existing builder. A negative unit leaves its placeholder alone.
+	 */
+	public void appendTo(StringBuilder sb, long days, long hours, long minutes, long seconds, String player, String oldTag) {
+		append(sb, days, hours, minutes, seconds, null, null, player, oldTag);
+	}
+
+	private void append(StringBuilder sb, long days, long hours, long minutes, long seconds, String quantity, String unit, String player, String oldTag) {
+		for (int i = 0; i < tokens.length; i++) {
+			sb.append(literals[i]);
+			Token token = tokens[i];
+			switch (token) {
+			case FORMATTED_TIME:
+				if (days < 0 || hours < 0 || minutes < 0 || seconds < 0) {
+					sb.append(token.placeholder);
+				} else {
+					appendFormattedTime(sb, days, hours, minutes, seconds);
+				}
+				break;
+			case DAYS:
+				appendUnit(sb, token, days);
+				break;
+			case HOURS:
+				appendUnit(sb, token, hours);
+				break;
+			case MINUTES:
+				appendUnit(sb, token, minutes);
+				break;
+			case SECONDS:
+				appendUnit(sb, token, seconds);
+				break;
+			case QUANTITY:
+				sb.append(quantity == null ? token.placeholder : quantity);
+				break;
+			case UNIT:
+				sb.append(unit == null ? token.placeholder : unit);
+				break;
+			case PLAYER:
+				sb.append(player == null ? token.placeholder : player);
+				break;
+			case OLD_TAG:
+				sb.append(oldTag == null ? token.placeholder : oldTag);
+				break;
+			}
+		}
+		sb.append(literals[tokens.length]);
+	}
+
+	private static void appendUnit(StringBuilder sb, Token token, long value) {
+		if (value < 0) {
+			sb.append(token.placeholder);
+		} else {
+			sb.append(value);
+		}
+	}
+
+	/**
+	 * Appends each non zero unit formatted with the general time format from the lang.
+	 */
+	private static void appendFormattedTime(StringBuilder sb, long days, long hours, long minutes, long seconds) {
+		MessageTemplate format = V.timeFormatTemplate;
+		int start = sb.length();
+		boolean addSpace = false;
+		if (days > 0) {
+			format.appendQuantity(sb, days, V.unitDays, false);
+			addSpace = true;
+		} if (hours > 0) {
+			format.appendQuantity(sb, hours, V.unitHours, addSpace);
+			addSpace = true;
+		} if (minutes > 0) {
+			format.appendQuantity(sb, minutes, V.unitMinutes, addSpace);
+			addSpace = true;
+		} if (seconds > 0 || sb.length() == start) {
+			format.appendQuantity(sb, seconds, V.unitSeconds, addSpace);
+		}
+	}
+
+	private void appendQuantity(StringBuilder sb, long quantity, String unit, boolean addSpace) {
+		if (addSpace) {
+			sb.append(' ');
+		}
+		append(sb, -1, -1, -1, -1, String.valueOf(quantity), unit, null, null);
+	}
+
+	@Override
+	public String toString() {
+		return source;
+	}
+
+}
@@ -1,5 +1,8 @@
 package com.moneybags.tempfly.util;
 
+import org.bukkit.GameMode;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitRunnable;
 
 import com.moneybags.tempfly.TempFly;
@@ -9,17 +12,97 @@ public class ParticleTask extends BukkitRunnable {
 
 	private TempFly tempfly;
 	
+	// The index of the flyer the next pass starts at, so flyers skipped by the budget go first next time.
+	private int cursor;
+	
+	private long
+	emitted,
+	culled,
+	overBudget;
+	
+	// Reused each pass, this task only runs on the main thread.
+	private final Location
+	flyerLocation = new Location(null, 0, 0, 0),
+	viewerLocation = new Location(null, 0, 0, 0);
+	
 	public ParticleTask(TempFly tempfly) {
 		this.tempfly = tempfly;
 	}
 	
 	@Override
 	public void run() {
-		for (FlightUser user: tempfly.getFlightManager().getUsers()) {
-			if (user.hasFlightEnabled() && user.getPlayer().isFlying()) {
-				user.playTrail();
+		FlightUser[] users = tempfly.getFlightManager().getUsers();
+		if (users.length == 0) {
+			return;
+		}
+		int budget = V.particleBudget > 0 ? V.particleBudget : Integer.MAX_VALUE;
+		int start = cursor % users.length;
+		int spent = 0, next = -1;
+		for (int i = 0; i < users.length; i++) {
+			int index = (start + i) % users.length;
+			FlightUser user = users[index];
+			if (!user.hasFlightEnabled() || !user.getPlayer().isFlying()) {
+				continue;
+			}
+			if (!hasViewer(user.getPlayer())) {
+				culled++;
+				continue;
 			}
+			if (spent >= budget) {
+				if (next == -1) {
+					next = index;
+				}
+				overBudget++;
+				continue;
+			}
+			if (user.playTrail()) {
+				spent++;
+				emitted++;
+			}
+		}
+		cursor = next == -1 ? start : next;
+	}
+	
+	/**
+	 * @return true if another player is close enough to see the trail of the flyer.
+	 */
+	private boolean hasViewer(Player p) {
+		int distance = V.particleViewDistance;
+		if (distance <= 0) {
+			return true;
 		}
+		double distanceSquared = (double) distance * distance;
+		p.getLocation(flyerLocation);
+		for (Player viewer : p.getWorld().getPlayers()) {
+			if (viewer == p || viewer.getGameMode() == GameMode.SPECTATOR) {
+				continue;
+			}
+			if (viewer.getLocation(viewerLocation).distanceSquared(flyerLocation) <= distanceSquared) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * @return The amount of trail particles displayed since the server started.
+	 */
+	public long getEmitted() {
+		return emitted;
+	}
+	
+	/**
+	 * @return The amount of trails skipped because no other player was close enough to see them.
+	 */
+	public long getCulled() {
+		return culled;
+	}
+	
+	/**
+	 * @return The amount of trails skipped because the particle budget was already spent.
+	 */
+	public long getOverBudget() {
+		return overBudget;
 	}
 
 }
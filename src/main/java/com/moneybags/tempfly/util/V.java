@@ -2,6 +2,7 @@ package com.moneybags.tempfly.util;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map.Entry;
 import java.util.List;
 import java.util.Map;
 
@@ -171,7 +172,10 @@ public class V {
 	combatTagPvp,
 	combatTagPve,
 	maxY,
-	decayThresh;
+	decayThresh,
+	particleViewDistance,
+	particleBudget,
+	reevaluateBudget;
 	
 	public static double
 	maxTimeBase,
@@ -192,6 +196,37 @@ public class V {
 	public static Map<String, Double>
 	dailyBonus,
 	maxTimeGroups;
+	
+	/**
+	 * The max time groups as permission nodes, unlimited groups first and then from highest to lowest
+	 * so the first one a player has is the one that applies. The daily bonus groups as permission nodes.
+	 */
+	public static String[]
+	maxTimeNodes,
+	dailyBonusNodes;
+	
+	public static double[]
+	maxTimeAmounts,
+	dailyBonusAmounts;
+	
+	/**
+	 * Compiled versions of the messages that are rendered constantly, such as every second while flying.
+	 */
+	public static MessageTemplate
+	timeFormatTemplate,
+	actionTextTemplate,
+	warningTitleTemplate,
+	warningSubtitleTemplate,
+	listNameTemplate,
+	listPlaceholderOnTemplate,
+	listPlaceholderOffTemplate,
+	tagNameTemplate,
+	tagPlaceholderOnTemplate,
+	tagPlaceholderOffTemplate,
+	fbDaysTemplate,
+	fbHoursTemplate,
+	fbMinutesTemplate,
+	fbSecondsTemplate;
 
 	public static void loadValues() {
 		dailyBonus 			= new HashMap<>();
@@ -339,6 +374,7 @@ public class V {
 		debug 				= config.getBoolean("system.debug");
 		disableTracker		= config.getBoolean("system.disable_region_tracking");
 		disableTab			= config.getBoolean("system.disable_tab");
+		reevaluateBudget	= config.getInt("system.reevaluate_budget", 5);
 		
 		permaTimer			= config.getBoolean("general.timer.constant");
 		groundTimer			= config.getBoolean("general.timer.ground");
@@ -352,6 +388,8 @@ public class V {
 		particleType		= config.getString("aesthetic.identifier.particles.type", "VILLAGER_HAPPY");
 		particleDefault		= config.getBoolean("aesthetic.identifier.particles.display_by_default");
 		hideVanish			= config.getBoolean("aesthetic.identifier.particles.hide_vanish");
+		particleViewDistance = config.getInt("aesthetic.identifier.particles.view_distance", 48);
+		particleBudget		= config.getInt("aesthetic.identifier.particles.budget", 150);
 		list				= config.getBoolean("aesthetic.identifier.tab_list.enabled");
 		listName			= st(C.CONFIG, "aesthetic.identifier.tab_list.name");
 		listPlaceholderOn	= st(C.CONFIG, "aesthetic.identifier.tab_list.placeholder.enabled");
@@ -411,6 +449,36 @@ public class V {
 				maxTimeGroups.put(s, config.getDouble("general.time.max.groups." + s));
 			}
 		}
+		List<Entry<String, Double>> groups = new ArrayList<>(maxTimeGroups.entrySet());
+		groups.sort((a, b) -> a.getValue() == -1 ? (b.getValue() == -1 ? 0 : -1) : b.getValue() == -1 ? 1 : Double.compare(b.getValue(), a.getValue()));
+		maxTimeNodes = new String[groups.size()];
+		maxTimeAmounts = new double[groups.size()];
+		for (int i = 0; i < groups.size(); i++) {
+			maxTimeNodes[i] = "tempfly.max." + groups.get(i).getKey();
+			maxTimeAmounts[i] = groups.get(i).getValue();
+		}
+		dailyBonusNodes = new String[dailyBonus.size()];
+		dailyBonusAmounts = new double[dailyBonus.size()];
+		int index = 0;
+		for (Entry<String, Double> entry : dailyBonus.entrySet()) {
+			dailyBonusNodes[index] = "tempfly.bonus." + entry.getKey();
+			dailyBonusAmounts[index++] = entry.getValue();
+		}
+		
+		timeFormatTemplate			= MessageTemplate.compile(timeFormat);
+		actionTextTemplate			= MessageTemplate.compile(actionText);
+		warningTitleTemplate		= MessageTemplate.compile(warningTitle);
+		warningSubtitleTemplate		= MessageTemplate.compile(warningSubtitle);
+		listNameTemplate			= MessageTemplate.compile(listName);
+		listPlaceholderOnTemplate	= MessageTemplate.compile(listPlaceholderOn);
+		listPlaceholderOffTemplate	= MessageTemplate.compile(listPlaceholderOff);
+		tagNameTemplate				= MessageTemplate.compile(tagName);
+		tagPlaceholderOnTemplate	= MessageTemplate.compile(tagPlaceholderOn);
+		tagPlaceholderOffTemplate	= MessageTemplate.compile(tagPlaceholderOff);
+		fbDaysTemplate				= MessageTemplate.compile(fbDays);
+		fbHoursTemplate				= MessageTemplate.compile(fbHours);
+		fbMinutesTemplate			= MessageTemplate.compile(fbMinutes);
+		fbSecondsTemplate			= MessageTemplate.compile(fbSeconds);
 	}
 	
 	private static int missingMessages = 0;